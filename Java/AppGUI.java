@@ -66,6 +66,10 @@ public class AppGUI extends Application {
 	ComboBox<String> boxOptimisationMode;
 	Label labelLinearScanMode;
 	ComboBox<String> boxLinearScanMode;
+	Label labelIOConcurrency;
+	Label labelJobOrder;
+	ComboBox<String> boxIOConcurrency;
+	ComboBox<String> boxJobOrder;
 	Button buttonResetOutput;
 	Label labelOutputFormat;
 	ComboBox<String> boxOutputFormat;
@@ -147,6 +151,8 @@ public class AppGUI extends Application {
 	ArrayList<String> windowTypes = new ArrayList<String>(Arrays.asList(Config.SCAN_WINDOW_LABELS));
 	ArrayList<String> optimisationTypes = new ArrayList<String>(Arrays.asList(Config.OPTIMISATION_LABELS));
 	ArrayList<String> linearScanModeTypes = new ArrayList<String>(Arrays.asList(Config.LINEAR_SCAN_MODE_LABELS));
+	ArrayList<String> ioConcurrencyTypes = new ArrayList<String>(Arrays.asList(Config.IO_CONCURRENCY_LABELS));
+	ArrayList<String> jobOrderTypes = new ArrayList<String>(Arrays.asList(Config.JOB_ORDER_LABELS));
 				// OUTPUT
 	ArrayList<String> outputTypes = new ArrayList<String>(Arrays.asList(Config.PDF, Config.JPG, Config.PNG, Config.SVG));
 	ArrayList<String> resolutionTypes = new ArrayList<String>(Arrays.asList(Config.RESOLUTION_LABELS));
@@ -205,6 +211,8 @@ public class AppGUI extends Application {
 		boxNoiseWindow.getSelectionModel().select(windowTypes.get(Config.NOISE_SCAN_WINDOW_INDEX));
 		boxOptimisationMode.getSelectionModel().select(optimisationTypes.get(Config.OPTIMISATION_INDEX));
 		boxLinearScanMode.getSelectionModel().select(linearScanModeTypes.get(Config.LINEAR_SCAN_MODE_INDEX));
+		boxIOConcurrency.getSelectionModel().select(ioConcurrencyTypes.get(Config.IO_CONCURRENCY_INDEX));
+		boxJobOrder.getSelectionModel().select(jobOrderTypes.get(Config.JOB_ORDER_INDEX));
 		boxOutputFormat.getSelectionModel().select(outputTypes.get(Config.OUTPUT_FORMAT_INDEX));
 		boxOutputResolution.getSelectionModel().select(resolutionTypes.get(Config.OUTPUT_RESOLUTION_INDEX));
 		boxVarianceScale.getSelectionModel().select(varianceScaleTypes.get(Config.VARIANCE_SCALE_INDEX));
@@ -570,12 +578,16 @@ public class AppGUI extends Application {
 		labelOptimisationMode = new Label("Loop Scan Optimisation:");
 		labelNoiseWindow = new Label("Noise Loop Size (sec):");
 		labelLinearScanMode = new Label("Linear Scan Mode:");
+		labelIOConcurrency = new Label("Parallel File Writes:");
+		labelJobOrder = new Label("Job Order:");
 		boxBufferSize = new ComboBox<String>();
 		boxAutoWindow = new ComboBox<String>();
 		boxSineWindow = new ComboBox<String>();
 		boxNoiseWindow = new ComboBox<String>();
 		boxOptimisationMode = new ComboBox<String>();
 		boxLinearScanMode = new ComboBox<String>();
+		boxIOConcurrency = new ComboBox<String>();
+		boxJobOrder = new ComboBox<String>();
 		buttonResetOutput = new Button("Set to Defaults");
 		labelOutputFormat = new Label("File Format:");
 		labelOutputResolution = new Label("Image Resolution:");
@@ -646,12 +658,16 @@ public class AppGUI extends Application {
 		controlsOptionsGeneral.add(labelNoiseWindow);
 		controlsOptionsGeneral.add(labelOptimisationMode);
 		controlsOptionsGeneral.add(labelLinearScanMode);
+		controlsOptionsGeneral.add(labelIOConcurrency);
+		controlsOptionsGeneral.add(labelJobOrder);
 		controlsOptionsGeneral.add(boxBufferSize);
 		controlsOptionsGeneral.add(boxAutoWindow);
 		controlsOptionsGeneral.add(boxSineWindow);
 		controlsOptionsGeneral.add(boxNoiseWindow);
 		controlsOptionsGeneral.add(boxOptimisationMode);
 		controlsOptionsGeneral.add(boxLinearScanMode);
+		controlsOptionsGeneral.add(boxIOConcurrency);
+		controlsOptionsGeneral.add(boxJobOrder);
 		controlsOptionsOutput.add(buttonResetOutput);
 		controlsOptionsOutput.add(labelOutputFormat);
 		controlsOptionsOutput.add(labelOutputResolution);
@@ -691,6 +707,8 @@ public class AppGUI extends Application {
 		controlsTextOverrunClip.add(labelNoiseWindow);
 		controlsTextOverrunClip.add(labelOptimisationMode);
 		controlsTextOverrunClip.add(labelLinearScanMode);
+		controlsTextOverrunClip.add(labelIOConcurrency);
+		controlsTextOverrunClip.add(labelJobOrder);
 		controlsTextOverrunClip.add(buttonResetOutput);
 		controlsTextOverrunClip.add(labelOutputFormat);
 		controlsTextOverrunClip.add(labelOutputResolution);
@@ -738,6 +756,8 @@ public class AppGUI extends Application {
 		boxNoiseWindow.setItems(FXCollections.observableArrayList(windowTypes));
 		boxOptimisationMode.setItems(FXCollections.observableArrayList(optimisationTypes));
 		boxLinearScanMode.setItems(FXCollections.observableArrayList(linearScanModeTypes));
+		boxIOConcurrency.setItems(FXCollections.observableArrayList(ioConcurrencyTypes));
+		boxJobOrder.setItems(FXCollections.observableArrayList(jobOrderTypes));
 		boxThemeSelect.setItems(FXCollections.observableArrayList(themeTypes));
 		boxFontSize.setItems(FXCollections.observableArrayList(fontSizeTypes));
 		boxProgressRefresh.setItems(FXCollections.observableArrayList(progressRefreshTypes));
@@ -755,6 +775,8 @@ public class AppGUI extends Application {
 		boxNoiseWindow.getSelectionModel().select(Config.NOISE_SCAN_WINDOW_INDEX);
 		boxOptimisationMode.getSelectionModel().select(Config.OPTIMISATION_INDEX);
 		boxLinearScanMode.getSelectionModel().select(Config.LINEAR_SCAN_MODE_INDEX);
+		boxIOConcurrency.getSelectionModel().select(Config.IO_CONCURRENCY_INDEX);
+		boxJobOrder.getSelectionModel().select(Config.JOB_ORDER_INDEX);
 		boxOutputFormat.getSelectionModel().select(Config.OUTPUT_FORMAT_INDEX);
 		boxOutputResolution.getSelectionModel().select(Config.OUTPUT_RESOLUTION_INDEX);
 		boxVarianceScale.getSelectionModel().select(Config.VARIANCE_SCALE_INDEX);
@@ -826,6 +848,8 @@ public class AppGUI extends Application {
 		labelNoiseWindow.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		labelOptimisationMode.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		labelLinearScanMode.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
+		labelIOConcurrency.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
+		labelJobOrder.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		buttonResetOutput.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_MEDIUM);
 		labelOutputFormat.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		labelOutputResolution.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
@@ -841,6 +865,8 @@ public class AppGUI extends Application {
 		boxNoiseWindow.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		boxOptimisationMode.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		boxLinearScanMode.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
+		boxIOConcurrency.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
+		boxJobOrder.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		boxOutputFormat.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		boxOutputResolution.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
 		boxVarianceScale.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE);
@@ -858,6 +884,8 @@ public class AppGUI extends Application {
 		labelNoiseWindow.setAlignment(Pos.CENTER_RIGHT);
 		labelOptimisationMode.setAlignment(Pos.CENTER_RIGHT);
 		labelLinearScanMode.setAlignment(Pos.CENTER_RIGHT);
+		labelIOConcurrency.setAlignment(Pos.CENTER_RIGHT);
+		labelJobOrder.setAlignment(Pos.CENTER_RIGHT);
 		labelOutputFormat.setAlignment(Pos.CENTER_RIGHT);
 		labelOutputResolution.setAlignment(Pos.CENTER_RIGHT);
 		labelVarianceScale.setAlignment(Pos.CENTER_RIGHT);
@@ -963,6 +991,10 @@ public class AppGUI extends Application {
 		gridOptions.add(boxOptimisationMode,			 	2, 5, 1, 1);
 		gridOptions.add(labelLinearScanMode,				1, 6, 1, 1);
 		gridOptions.add(boxLinearScanMode,					2, 6, 1, 1);
+		gridOptions.add(labelIOConcurrency,					1, 7, 1, 1);
+		gridOptions.add(labelJobOrder,						1, 8, 1, 1);
+		gridOptions.add(boxIOConcurrency,					2, 7, 1, 1);
+		gridOptions.add(boxJobOrder,						2, 8, 1, 1);
 					// Output
 		gridOptions.add(buttonResetOutput, 	 				0, 1, 1, 1);
 		gridOptions.add(labelOutputFormat,		 			1, 1, 1, 1);
@@ -984,7 +1016,7 @@ public class AppGUI extends Application {
 		gridOptions.add(labelProgressRefresh,	 			1, 3, 1, 1);
 		gridOptions.add(boxProgressRefresh,	 				2, 3, 1, 1);
 					// Info
-		gridOptions.add(textInfo, 				 			0, 1, 3, 6);
+		gridOptions.add(textInfo, 				 			0, 1, 3, 8);
 			// Alignment
 				// Options
 					// Overall
@@ -1003,8 +1035,12 @@ public class AppGUI extends Application {
 		gridOptions.setValignment(boxNoiseWindow,		 	VPos.CENTER);
 		gridOptions.setValignment(labelOptimisationMode,	VPos.CENTER);
 		gridOptions.setValignment(boxOptimisationMode,		VPos.CENTER);
-		gridOptions.setValignment(labelLinearScanMode,		VPos.BASELINE);		// Bottom of each column must be BASLINE
-		gridOptions.setValignment(boxLinearScanMode,		VPos.BASELINE);		// All others must be CENTER
+		gridOptions.setValignment(labelLinearScanMode,		VPos.CENTER);
+		gridOptions.setValignment(boxLinearScanMode,		VPos.CENTER);
+		gridOptions.setValignment(labelIOConcurrency,		VPos.CENTER);
+		gridOptions.setValignment(boxIOConcurrency,			VPos.CENTER);
+		gridOptions.setValignment(labelJobOrder,			VPos.BASELINE);		// Bottom of each column must be BASLINE
+		gridOptions.setValignment(boxJobOrder,				VPos.BASELINE);		// All others must be CENTER
 					// Display
 						// Column 1 (Buttons, Checkboxes)
 		gridOptions.setValignment(buttonResetOutput,		VPos.BASELINE);
@@ -1135,6 +1171,8 @@ public class AppGUI extends Application {
 				Config.NOISE_SCAN_WINDOW_INDEX 		= Config.NOISE_SCAN_WINDOW_INDEX_DEFAULT;
 				Config.OPTIMISATION_INDEX			= Config.OPTIMISATION_INDEX_DEFAULT;
 				Config.LINEAR_SCAN_MODE_INDEX		= Config.LINEAR_SCAN_MODE_INDEX_DEFAULT;
+				Config.IO_CONCURRENCY_INDEX			= Config.IO_CONCURRENCY_INDEX_DEFAULT;
+				Config.JOB_ORDER_INDEX				= Config.JOB_ORDER_INDEX_DEFAULT;
 				populateOptionsGrid();
 				refreshToolsGrid();
             }
@@ -1187,6 +1225,22 @@ public class AppGUI extends Application {
 				refreshToolsGrid();
             }
         });
+        boxIOConcurrency.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+				Config.IO_CONCURRENCY_INDEX = ioConcurrencyTypes.indexOf(boxIOConcurrency.getValue());
+				refreshOptionsGrid();
+				refreshToolsGrid();
+            }
+        });
+        boxJobOrder.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+				Config.JOB_ORDER_INDEX = jobOrderTypes.indexOf(boxJobOrder.getValue());
+				refreshOptionsGrid();
+				refreshToolsGrid();
+            }
+        });
         buttonResetOutput.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
@@ -1585,6 +1639,8 @@ public class AppGUI extends Application {
 			labelNoiseWindow.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE + widthDifference);
 			labelOptimisationMode.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE + widthDifference);
 			labelLinearScanMode.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE + widthDifference);
+			labelIOConcurrency.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE + widthDifference);
+			labelJobOrder.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE + widthDifference);
 				// Output
 			labelOutputFormat.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE + widthDifference);
 			labelOutputResolution.setPrefWidth(Config.CONTROL_DEFAULT_WIDTH_WIDE + widthDifference);
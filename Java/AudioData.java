@@ -5,15 +5,23 @@
 * Date: September 2024
 */
 
+import java.io.*;
+
 import javax.sound.sampled.*;
 import javax.sound.sampled.AudioFileFormat.*;
 
-public class AudioData {
-	public int[] data;
+public class AudioData implements Closeable {
+	public SampleStore data;
 	public AudioFormat metaData;
 	
-	AudioData(int[] data, AudioFormat metaData) {
+	AudioData(SampleStore data, AudioFormat metaData) {
 		this.data = data;
 		this.metaData = metaData;
 	}
+	
+	// Frees the decoded audio (e.g. if the file is discarded before it is analysed)
+	@Override
+	public void close() throws IOException {
+		data.close();
+	}
 }
\ No newline at end of file
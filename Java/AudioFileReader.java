@@ -0,0 +1,447 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import javax.sound.sampled.*;
+
+// Reads audio files as a stream of mono integer samples.
+// WAV, AIFF/AIFC and AU headers are parsed natively. The data chunk is read sequentially on a background thread
+// (see ReadAheadReader), so the disk reads the next block while the current one is decoded. If read-ahead is disabled,
+// the data chunk is memory-mapped instead, and samples are decoded directly from the file.
+// RF64/BW64 files (i.e. WAV files larger than 4GB) are parsed natively too, so there is no limit on the file size.
+// Files that can't be parsed natively (e.g. compressed or floating-point encodings) are read through AudioSystem.
+// Leading and trailing silence (i.e. frames that only contain zero bytes) is excluded from the output.
+public class AudioFileReader implements Closeable {
+	public AudioFormat metaData;
+	public long frameCount;		// Number of frames that will be returned by read() (an upper bound for AudioSystem files)
+	public boolean mapped;		// True if the file was parsed natively (i.e. the data chunk is memory-mapped or read ahead)
+
+	// Native state
+	private FileChannel channel;
+	private long dataOffset;	// Position of the first audio byte within the file
+	private long dataLength;	// Measured in bytes
+	private long startFrame;	// First frame after leading silence
+	private long endFrame;		// Frame after the last non-silent frame
+	private long framePosition;
+	private MappedByteBuffer window;
+	private long windowStart;	// Byte positions relative to dataOffset
+	private long windowEnd;
+	private ReadAheadReader readAhead;		// Null if read-ahead is disabled
+	private ReadAheadReader.Block block;	// Block that is currently being decoded
+	private int blockPosition;
+
+	// AudioSystem state
+	private AudioInputStream audioStream;
+	private byte[] rawBuffer;
+	private int rawPosition;		// Measured in frames
+	private int rawSoundEnd;
+	private long silenceHeld;		// Silent frames that will only be output if more audio follows them
+	private long silencePending;	// Silent frames that are waiting to be output
+	private boolean leadingSilence;
+
+	private int sampleSize;
+	private int channels;
+	private int frameSize;
+	private boolean bigEndian;
+
+	// Location of the audio data within a natively parsed file (used to copy audio without decoding it)
+	public static class DataChunk {
+		public AudioFormat metaData;
+		public byte[] header;		// Every byte before the audio data
+		public long offset;			// Position of the first audio byte within the file
+		public long length;			// Measured in bytes (whole frames only)
+		public int frameSize;
+	}
+
+	private AudioFileReader() { }
+
+	public static AudioFileReader open(File file) throws Exception {
+		AudioFileReader reader = new AudioFileReader();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if (reader.parseHeader(channel)) {
+				reader.channel = channel;
+				reader.initialiseMapped();
+				return reader;
+			}
+		} catch (IOException e) {
+			reader = new AudioFileReader();		// Malformed header (AudioSystem is used instead)
+		}
+		channel.close();
+		reader.initialiseStream(file);
+		return reader;
+	}
+
+	// Returns null if the file can't be parsed natively
+	public static DataChunk getDataChunk(File file) throws IOException {
+		AudioFileReader reader = new AudioFileReader();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (!reader.parseHeader(channel) || reader.dataOffset > Integer.MAX_VALUE) return null;
+			DataChunk chunk = new DataChunk();
+			chunk.metaData = reader.metaData;
+			chunk.header = readBytes(channel, 0, (int) reader.dataOffset, ByteOrder.BIG_ENDIAN).array();
+			chunk.offset = reader.dataOffset;
+			chunk.length = (reader.dataLength / reader.frameSize) * reader.frameSize;
+			chunk.frameSize = reader.frameSize;
+			return chunk;
+		} catch (IOException e) {
+			return null;	// Malformed header
+		}
+	}
+
+	// Returns the number of frames written to 'data' (or -1 if the end of the audio has been reached)
+	public int read(int[] data, int offset, int maxFrames) throws IOException {
+		if (!mapped) return readStream(data, offset, maxFrames);
+		return (readAhead != null) ? readAhead(data, offset, maxFrames) : readMapped(data, offset, maxFrames);
+	}
+
+	public int getFrameSize() {
+		return frameSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (readAhead != null) readAhead.close();	// Stopped before the channel is closed
+		readAhead = null;		// Its blocks have been returned to the pool (closing again must not return them twice)
+		block = null;
+		window = null;
+		if (channel != null) channel.close();
+		if (audioStream != null) audioStream.close();
+	}
+
+	//----------------------------------------
+	// Header parsing
+	//----------------------------------------
+	private boolean parseHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = readBytes(channel, 0, 12, ByteOrder.BIG_ENDIAN);
+		String magic = getFourCC(header, 0);
+		if ((magic.equals("RIFF") || magic.equals("RF64") || magic.equals("BW64")) && getFourCC(header, 8).equals("WAVE")) {
+			return parseWav(channel);
+		} else if (magic.equals("FORM") && (getFourCC(header, 8).equals("AIFF") || getFourCC(header, 8).equals("AIFC"))) {
+			return parseAiff(channel, getFourCC(header, 8).equals("AIFC"));
+		} else if (magic.equals(".snd")) {
+			return parseAu(channel);
+		}
+		return false;
+	}
+
+	private boolean parseWav(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		long position = 12;
+		int formatTag = -1;
+		float sampleRate = 0;
+		Map<String, Long> largeChunkSizes = new HashMap<String, Long>();	// 64-bit chunk sizes from an RF64 'ds64' chunk
+		while (position + 8 <= fileSize) {
+			ByteBuffer chunk = readBytes(channel, position, 8, ByteOrder.LITTLE_ENDIAN);
+			String chunkId = getFourCC(chunk, 0);
+			long chunkSize = chunk.getInt(4) & 0xffffffffL;
+			if (chunkSize == 0xffffffffL && largeChunkSizes.getOrDefault(chunkId, -1L) >= 0) {
+				chunkSize = largeChunkSizes.get(chunkId);
+			}
+			if (chunkId.equals("ds64") && chunkSize >= 28) {	// RF64/BW64 (the data chunk size is stored here instead)
+				ByteBuffer ds64 = readBytes(channel, position + 8, 28, ByteOrder.LITTLE_ENDIAN);
+				largeChunkSizes.put("data", ds64.getLong(8));
+				int tableLength = ds64.getInt(24);	// Sizes of any other chunks that are larger than 4GB
+				if (tableLength > 0 && tableLength <= (chunkSize - 28) / 12) {
+					ByteBuffer table = readBytes(channel, position + 36, tableLength * 12, ByteOrder.LITTLE_ENDIAN);
+					for (int t = 0; t < tableLength; t++) {
+						largeChunkSizes.put(getFourCC(table, t * 12), table.getLong((t * 12) + 4));
+					}
+				}
+			} else if (chunkId.equals("fmt ")) {
+				ByteBuffer fmt = readBytes(channel, position + 8, (int) Math.min(chunkSize, 40), ByteOrder.LITTLE_ENDIAN);
+				formatTag = fmt.getShort(0) & 0xffff;
+				channels = fmt.getShort(2) & 0xffff;
+				sampleRate = fmt.getInt(4) & 0xffffffffL;
+				frameSize = fmt.getShort(12) & 0xffff;
+				if (formatTag == 0xfffe && chunkSize >= 26) {	// WAVE_FORMAT_EXTENSIBLE (sub-format GUID starts at byte 24)
+					formatTag = fmt.getShort(24) & 0xffff;
+				}
+			} else if (chunkId.equals("data")) {
+				if (formatTag != 1 || channels < 1 || frameSize < channels) return false;	// Only integer PCM is decoded natively
+				sampleSize = (frameSize / channels) * 8;	// Container size (valid bits are left-justified)
+				if (sampleSize > Config.MAXIMUM_AUDIO_BIT_DEPTH) return false;
+				bigEndian = false;
+				dataOffset = position + 8;
+				dataLength = chunkSize;
+				if (chunkSize == 0xffffffffL || dataOffset + chunkSize > fileSize) {	// Unfinalised or >4GB recording
+					dataLength = fileSize - dataOffset;
+				}
+				AudioFormat.Encoding encoding = sampleSize == 8 ? AudioFormat.Encoding.PCM_UNSIGNED
+																: AudioFormat.Encoding.PCM_SIGNED;
+				metaData = new AudioFormat(encoding, sampleRate, sampleSize, channels, frameSize, sampleRate, bigEndian);
+				return true;
+			}
+			position += 8 + chunkSize + (chunkSize & 1);	// Chunks are word-aligned
+		}
+		return false;
+	}
+
+	private boolean parseAiff(FileChannel channel, boolean compressed) throws IOException {
+		long fileSize = channel.size();
+		long position = 12;
+		boolean commonFound = false;
+		long sampleFrames = 0;
+		int bitDepth = 0;
+		float sampleRate = 0;
+		bigEndian = true;
+		while (position + 8 <= fileSize) {
+			ByteBuffer chunk = readBytes(channel, position, 8, ByteOrder.BIG_ENDIAN);
+			String chunkId = getFourCC(chunk, 0);
+			long chunkSize = chunk.getInt(4) & 0xffffffffL;
+			if (chunkId.equals("COMM")) {
+				ByteBuffer comm = readBytes(channel, position + 8, (int) Math.min(chunkSize, 22), ByteOrder.BIG_ENDIAN);
+				channels = comm.getShort(0) & 0xffff;
+				sampleFrames = comm.getInt(2) & 0xffffffffL;
+				bitDepth = comm.getShort(6) & 0xffff;
+				sampleRate = (float) getExtendedFloat(comm, 8);
+				if (compressed) {
+					String compression = chunkSize >= 22 ? getFourCC(comm, 18) : "NONE";
+					if (compression.equals("sowt")) {
+						bigEndian = false;
+					} else if (!compression.equals("NONE") && !compression.equals("twos")) {
+						return false;
+					}
+				}
+				commonFound = true;
+			} else if (chunkId.equals("SSND")) {
+				if (!commonFound || channels < 1 || bitDepth < 1 || bitDepth > Config.MAXIMUM_AUDIO_BIT_DEPTH) return false;
+				ByteBuffer ssnd = readBytes(channel, position + 8, 8, ByteOrder.BIG_ENDIAN);
+				long dataSkip = ssnd.getInt(0) & 0xffffffffL;
+				sampleSize = ((bitDepth + 7) / 8) * 8;
+				frameSize = channels * (sampleSize / 8);
+				dataOffset = position + 16 + dataSkip;
+				dataLength = Math.min(chunkSize - 8 - dataSkip, fileSize - dataOffset);
+				dataLength = Math.min(dataLength, sampleFrames * frameSize);
+				metaData = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, sampleSize,
+										   channels, frameSize, sampleRate, bigEndian);
+				return dataLength >= 0;
+			}
+			position += 8 + chunkSize + (chunkSize & 1);
+		}
+		return false;
+	}
+
+	private boolean parseAu(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		ByteBuffer header = readBytes(channel, 0, 24, ByteOrder.BIG_ENDIAN);
+		long offset = header.getInt(4) & 0xffffffffL;
+		long size = header.getInt(8) & 0xffffffffL;
+		int encoding = header.getInt(12);
+		float sampleRate = header.getInt(16) & 0xffffffffL;
+		channels = header.getInt(20);
+		if (encoding < 2 || encoding > 5 || channels < 1) return false;		// 8/16/24/32-bit linear PCM only
+		sampleSize = (encoding - 1) * 8;
+		frameSize = channels * (sampleSize / 8);
+		bigEndian = true;
+		dataOffset = offset;
+		dataLength = (size == 0xffffffffL || offset + size > fileSize) ? fileSize - offset : size;
+		metaData = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, sampleSize,
+								   channels, frameSize, sampleRate, bigEndian);
+		return dataLength >= 0;
+	}
+
+	private static ByteBuffer readBytes(FileChannel channel, long position, int length, ByteOrder order) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of audio file header");
+			}
+		}
+		return buffer;
+	}
+
+	private static String getFourCC(ByteBuffer buffer, int index) {
+		byte[] id = new byte[4];
+		for (int i = 0; i < 4; i++) { id[i] = buffer.get(index + i); }
+		return new String(id, java.nio.charset.StandardCharsets.US_ASCII);
+	}
+
+	// 80-bit IEEE 754 extended precision value (used for AIFF sample rates)
+	private static double getExtendedFloat(ByteBuffer buffer, int index) {
+		int exponent = ((buffer.get(index) & 0x7f) << 8) | (buffer.get(index + 1) & 0xff);
+		long mantissa = buffer.getLong(index + 2);
+		if (exponent == 0 && mantissa == 0) return 0.0;
+		double value = Math.scalb((double) (mantissa >>> 11), exponent - 16383 - 52);
+		return (buffer.get(index) & 0x80) != 0 ? -value : value;
+	}
+
+	//----------------------------------------
+	// Native decoding
+	//----------------------------------------
+	private void initialiseMapped() throws IOException {
+		mapped = true;
+		long totalFrames = dataLength / frameSize;
+		startFrame = findSoundStart(totalFrames);
+		endFrame = startFrame < totalFrames ? findSoundEnd(totalFrames) : startFrame;
+		framePosition = startFrame;
+		frameCount = endFrame - startFrame;
+		window = null;		// Only used to find the leading/trailing silence if read-ahead is enabled
+		if (Config.READ_AHEAD_BLOCKS > 0 && frameCount > 0) {
+			int blockSize = (int) Math.max(frameSize, (Config.READ_AHEAD_BLOCK_SIZE / frameSize) * frameSize);
+			readAhead = new ReadAheadReader(channel, dataOffset + (startFrame * frameSize), dataOffset + (endFrame * frameSize),
+											blockSize, Config.READ_AHEAD_BLOCKS);
+		}
+	}
+
+	private void mapWindow(long bytePosition) throws IOException {
+		long windowSize = (Config.MAP_WINDOW_SIZE / frameSize) * frameSize;
+		windowStart = (bytePosition / frameSize) * frameSize;
+		windowEnd = Math.min(windowStart + windowSize, (dataLength / frameSize) * frameSize);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + windowStart, windowEnd - windowStart);
+	}
+
+	private int readMapped(int[] data, int offset, int maxFrames) throws IOException {
+		if (framePosition >= endFrame) return -1;
+		long bytePosition = framePosition * frameSize;
+		if (window == null || bytePosition < windowStart || bytePosition >= windowEnd) {
+			mapWindow(bytePosition);
+		}
+		int frames = (int) Math.min(maxFrames, Math.min((windowEnd - bytePosition) / frameSize, endFrame - framePosition));
+		PCMDecoder.decode(window, (int) (bytePosition - windowStart), frames, data, offset,
+						  sampleSize, channels, frameSize, bigEndian);
+		framePosition += frames;
+		return frames;
+	}
+
+	private int readAhead(int[] data, int offset, int maxFrames) throws IOException {
+		if (block == null || blockPosition >= block.length) {
+			if (block != null) readAhead.release(block);
+			block = readAhead.take();
+			blockPosition = 0;
+			if (block == null) return -1;
+		}
+		int frames = Math.min(maxFrames, (block.length - blockPosition) / frameSize);
+		PCMDecoder.decode(block.data, blockPosition, frames, data, offset, sampleSize, channels, frameSize, bigEndian);
+		blockPosition += frames * frameSize;
+		framePosition += frames;
+		return frames;
+	}
+
+	// Returns the first frame containing a non-zero byte (or 'totalFrames' if the audio is completely silent)
+	private long findSoundStart(long totalFrames) throws IOException {
+		long totalBytes = totalFrames * frameSize;
+		for (long position = 0; position < totalBytes; position = windowEnd) {
+			mapWindow(position);
+			int length = (int) (windowEnd - windowStart);
+			for (int b = 0; b < length; b++) {
+				if (window.get(b) != 0) return (windowStart + b) / frameSize;
+			}
+		}
+		return totalFrames;
+	}
+
+	// Returns the frame after the last frame containing a non-zero byte
+	private long findSoundEnd(long totalFrames) throws IOException {
+		long windowSize = (Config.MAP_WINDOW_SIZE / frameSize) * frameSize;
+		for (long end = totalFrames * frameSize; end > 0; end -= windowSize) {
+			mapWindow(Math.max(0, end - windowSize));
+			for (int b = (int) (end - windowStart) - 1; b >= 0; b--) {
+				if (window.get(b) != 0) return ((windowStart + b) / frameSize) + 1;
+			}
+		}
+		return 0;
+	}
+
+	//----------------------------------------
+	// AudioSystem decoding
+	//----------------------------------------
+	private void initialiseStream(File file) throws Exception {
+		mapped = false;
+		audioStream = AudioSystem.getAudioInputStream(file);
+		AudioFormat format = audioStream.getFormat();
+		AudioFormat.Encoding encoding = format.getEncoding();
+		if (!encoding.equals(AudioFormat.Encoding.PCM_SIGNED) && !encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED)) {
+			int targetSize = format.getSampleSizeInBits() >= 16 && format.getSampleSizeInBits() % 8 == 0 ?
+							 Math.min(format.getSampleSizeInBits(), Config.MAXIMUM_AUDIO_BIT_DEPTH) : 16;
+			AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), targetSize,
+												 format.getChannels(), format.getChannels() * (targetSize / 8),
+												 format.getSampleRate(), format.isBigEndian());
+			if (AudioSystem.isConversionSupported(target, format)) {	// e.g. u-law, a-law, floating-point
+				audioStream = AudioSystem.getAudioInputStream(target, audioStream);
+				format = target;
+			}
+		}
+		metaData = format;
+		sampleSize = format.getSampleSizeInBits();
+		channels = format.getChannels();
+		frameSize = format.getFrameSize();
+		bigEndian = format.isBigEndian();
+		long streamFrames = audioStream.getFrameLength();
+		frameCount = streamFrames != AudioSystem.NOT_SPECIFIED ? streamFrames : file.length() / frameSize;
+		rawBuffer = new byte[Config.DECODE_BLOCK_FRAMES * frameSize];
+		leadingSilence = true;
+	}
+
+	private int readStream(int[] data, int offset, int maxFrames) throws IOException {
+		while (true) {
+			if (silencePending > 0) {	// Silent frames are decoded as zero
+				int frames = (int) Math.min(maxFrames, silencePending);
+				Arrays.fill(data, offset, offset + frames, 0);
+				silencePending -= frames;
+				return frames;
+			}
+			if (rawPosition < rawSoundEnd) {
+				int frames = Math.min(maxFrames, rawSoundEnd - rawPosition);
+				PCMDecoder.decode(rawBuffer, rawPosition * frameSize, frames, data, offset,
+								  sampleSize, channels, frameSize, bigEndian);
+				rawPosition += frames;
+				return frames;
+			}
+			int rawFrames = fillRawBuffer();
+			if (rawFrames <= 0) return -1;	// Any held silence is trailing silence, and is therefore discarded
+			int first = 0;
+			if (leadingSilence) {
+				int soundStart = findSoundStart(rawBuffer, 0, rawFrames);
+				if (soundStart == -1) continue;
+				first = soundStart;
+				leadingSilence = false;
+			}
+			int last = findSoundEnd(rawBuffer, first, rawFrames);
+			if (last == -1) {
+				silenceHeld += rawFrames - first;
+				continue;
+			}
+			silencePending = silenceHeld;	// Silence followed by audio is part of the recording
+			silenceHeld = rawFrames - 1 - last;
+			rawPosition = first;
+			rawSoundEnd = last + 1;
+		}
+	}
+
+	// Fills the raw buffer with whole frames (short reads are retried until the buffer is full or the stream ends)
+	private int fillRawBuffer() throws IOException {
+		int filled = 0;
+		while (filled < rawBuffer.length) {
+			int bytesRead = audioStream.read(rawBuffer, filled, rawBuffer.length - filled);
+			if (bytesRead < 0) break;
+			filled += bytesRead;
+		}
+		rawPosition = 0;
+		rawSoundEnd = 0;
+		return filled / frameSize;
+	}
+
+	private int findSoundStart(byte[] buffer, int fromFrame, int toFrame) {
+		for (int b = fromFrame * frameSize; b < toFrame * frameSize; b++) {
+			if (buffer[b] != 0) return b / frameSize;
+		}
+		return -1;
+	}
+
+	private int findSoundEnd(byte[] buffer, int fromFrame, int toFrame) {
+		for (int b = (toFrame * frameSize) - 1; b >= fromFrame * frameSize; b--) {
+			if (buffer[b] != 0) return b / frameSize;
+		}
+		return -1;
+	}
+}
\ No newline at end of file
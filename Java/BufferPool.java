@@ -0,0 +1,86 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Shared pool of reusable byte arrays for file I/O.
+// Arrays are grouped into power-of-2 size classes, so a borrowed array may be larger than requested (callers must
+// only use the length they asked for). Released arrays are kept until the pool holds BUFFER_POOL_LIMIT bytes, and any
+// further arrays are left to the garbage collector.
+public class BufferPool {
+	public static final BufferPool SHARED = new BufferPool(Config.BUFFER_POOL_LIMIT);
+	private static final int MAX_SIZE_CLASS = 30;		// Larger arrays (>1GB) are never pooled
+
+	private ArrayList<ConcurrentLinkedDeque<byte[]>> sizeClasses = new ArrayList<ConcurrentLinkedDeque<byte[]>>();
+	private long limit;
+	private AtomicLong pooledBytes = new AtomicLong();
+	private AtomicLong hits = new AtomicLong();			// Borrowed arrays that were reused
+	private AtomicLong misses = new AtomicLong();		// Borrowed arrays that had to be allocated
+
+	public BufferPool(long limit) {
+		this.limit = limit;
+		for (int c = 0; c <= MAX_SIZE_CLASS; c++) {
+			sizeClasses.add(new ConcurrentLinkedDeque<byte[]>());
+		}
+	}
+
+	// Returns an array of at least 'size' bytes (its contents are undefined)
+	public byte[] borrow(int size) {
+		int sizeClass = getSizeClass(size);
+		if (sizeClass > MAX_SIZE_CLASS) {
+			misses.incrementAndGet();
+			return new byte[size];
+		}
+		byte[] buffer = sizeClasses.get(sizeClass).pollFirst();		// Most recently released first (likely still cached)
+		if (buffer != null) {
+			pooledBytes.addAndGet(-buffer.length);
+			hits.incrementAndGet();
+			return buffer;
+		}
+		misses.incrementAndGet();
+		return new byte[1 << sizeClass];
+	}
+
+	public void release(byte[] buffer) {
+		int sizeClass = getSizeClass(buffer.length);
+		if (sizeClass > MAX_SIZE_CLASS || buffer.length != (1 << sizeClass)) return;	// Not borrowed from a pool
+		if (pooledBytes.addAndGet(buffer.length) > limit) {
+			pooledBytes.addAndGet(-buffer.length);
+			return;
+		}
+		sizeClasses.get(sizeClass).offerFirst(buffer);
+	}
+
+	// Drops every pooled array (statistics are kept)
+	public void clear() {
+		for (ConcurrentLinkedDeque<byte[]> sizeClass : sizeClasses) {
+			byte[] buffer;
+			while ((buffer = sizeClass.pollFirst()) != null) {
+				pooledBytes.addAndGet(-buffer.length);
+			}
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getPooledBytes() {
+		return pooledBytes.get();
+	}
+
+	// Smallest power of 2 that is at least 'size'
+	private static int getSizeClass(int size) {
+		return (size <= 1) ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+}
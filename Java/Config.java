@@ -38,6 +38,9 @@ public class Config {
 	public static final String DUAL_SEPARATE		 	= "Dual (Separate Graphs)";
 	public static final String SIZE						= "Size";
 	public static final String TIME						= "Time";
+	public static final String AS_LISTED				= "As Listed";
+	public static final String SMALLEST_FIRST			= "Smallest First";
+	public static final String LARGEST_FIRST			= "Largest First";
 	//----------------------------------------
 	// NUMBER MACROS
 	//----------------------------------------
@@ -49,10 +52,42 @@ public class Config {
 	//----------------------------------------
 	public static final int MAXIMUM_AUDIO_BIT_DEPTH  			 = 32;
 	public static final int MAXIMUM_AUDIO_SAMPLE_RATE 			 = 96000;
-	public static final long LOOP_SCAN_FILE_SIZE_LIMIT	 		 = 4200000000L;		// Measured in bytes
-	public static final long LINEAR_SCAN_FILE_SIZE_LIMIT 		 = 4200000000L;
+	public static final long LOOP_SCAN_FILE_SIZE_LIMIT	 		 = Long.MAX_VALUE;		// Measured in bytes (samples are stored in segments, i.e. no limit)
+	public static final long LINEAR_SCAN_FILE_SIZE_LIMIT 		 = Long.MAX_VALUE;		// Streamed in constant memory (i.e. no limit)
 	public static final long FILE_SPLIT_FILE_SIZE_LIMIT			 = 4294967000L;		// Doesn't apply to WAV files
-	public static final long ANALYSE_GAIN_FILE_SIZE_LIMIT 		 = 4200000000L;
+	public static final long ANALYSE_GAIN_FILE_SIZE_LIMIT 		 = Long.MAX_VALUE;		// Streamed in constant memory (i.e. no limit)
+	public static final int DECODE_BLOCK_FRAMES				 = 65536;			// Frames decoded between progress/cancellation checks
+	public static final long MAP_WINDOW_SIZE					 = 1073741824L;		// Bytes of an audio file that are memory-mapped at once
+	public static final int READ_AHEAD_BLOCKS					 = 3;				// Blocks of audio read ahead of the decoder (0 = memory-map the audio instead)
+	public static final long READ_AHEAD_BLOCK_SIZE			 = 8388608L;		// Bytes of audio per read-ahead block
+	public static final boolean USE_FILE_PIPELINE				 = true;			// Overlaps the decode, analysis and render stages of consecutive files
+	public static final int PIPELINE_QUEUE_CAPACITY			 = 1;				// Files waiting between stages (decoded files are held in memory)
+	public static final int PIPELINE_DECODE_THREADS			 = 1;				// Files processed at once by each stage
+	public static final int PIPELINE_ANALYSIS_THREADS			 = 1;
+	public static final int PIPELINE_RENDER_THREADS			 = 2;
+	public static final long BUFFER_POOL_LIMIT				 = 2147483648L;		// Bytes of released I/O buffers that are kept for reuse
+	public static final int MAX_CONCURRENT_BATCHES			 = 2;				// Batches run at once when using multiple batches (see MemoryBudget)
+	public static final long BATCH_MEMORY_BUDGET				 = 0L;				// Bytes shared by the running batches (0 = maximum heap size)
+	public static final long BASE_MEMORY						 = 1073741824L;		// Bytes used by the application itself (see readme)
+	public static final long FILE_BASE_MEMORY					 = 33554432L;		// Bytes used by each file regardless of its size (see MemoryEstimator)
+	public static final long MEMORY_SAMPLE_INTERVAL			 = 50L;				// Milliseconds between measurements of memory usage
+	public static final int SAMPLE_SEGMENT_SHIFT				 = 26;				// Decoded audio is stored in segments of 2^26 samples (256MB)
+	public static final long SAMPLE_SPILL_THRESHOLD			 = 8589934592L;		// Decoded audio is stored in temporary files once this many bytes are held in memory (see -XX:MaxDirectMemorySize in the run scripts)
+	public static final int LOOP_DETECTION_MAX_FRAMES			 = Integer.MAX_VALUE - 8;	// Loop lengths are detected from (at most) this many frames at the start of a file
+	public static final int AUTOCORRELATION_MAX_POINTS		 = 1048576;			// Samples in the coarsest level of automatic loop detection
+	public static final double LOOP_CORRELATION_TOLERANCE		 = 0.01;			// Shorter loop lengths are preferred if their correlation is this close to the best
+	public static final int LOOP_SEARCH_GRAIN				 = 64;				// Candidate loop lengths scored by each fork/join task
+	public static final int LOOP_SEARCH_CHUNK_FRAMES		 = 16384;			// Frames of each loop read from the sample store at a time while scoring a candidate
+	public static final int LOOP_SEARCH_PROBES				 = 4096;			// Quietest frames checked before the rest of a candidate (most candidates are abandoned here)
+	public static final long LOOP_SEARCH_POLL_INTERVAL		 = 100L;			// Milliseconds between progress updates during parallel searches
+	public static final boolean SHOW_DIAGNOSTICS			 = Boolean.getBoolean("audiscope.diagnostics");	// Print internal measurements (e.g. memory allocated per loop candidate) to the log (run with -Daudiscope.diagnostics=true)
+	public static final boolean USE_VECTOR_KERNELS			 = true;			// SIMD kernels (requires --add-modules jdk.incubator.vector)
+	public static final int VARIANCE_SEGMENT_WINDOWS			 = 8;				// Loop variance windows calculated by each fork/join task
+	public static final int[] LOOP_PYRAMID_FACTORS				 = new int[] {16, 4};	// Decimation factors of a coarse-to-fine loop search (coarsest first)
+	public static final int LOOP_PYRAMID_SHORTLIST			 = 16;				// Candidates kept at each decimated level
+	public static final int LOOP_PYRAMID_MIN_CANDIDATES		 = 4096;			// Smaller ranges are always searched exhaustively
+	public static final int[] SMOOTHING_WINDOWS				 = new int[] {10, 20};	// Points in each moving average series of analysis graphs (e.g. add 60, 300)
+	public static final boolean DECIMATE_GRAPH_DATA			 = true;			// Plot at most 2 points per pixel column of the output resolution
 	public static final String[] LOOP_SCAN_SUPPORTED_FORMATS	 = new String[] {"aif", "aiff", "au", "wav"};
 	public static final String[] LINEAR_SCAN_SUPPORTED_FORMATS	 = new String[] {"aif", "aiff", "au", "wav"};
 	public static final String[] FILE_SPLIT_SUPPORTED_FORMATS	 = new String[] {"wav"};
@@ -72,6 +107,8 @@ public class Config {
 																10000000L, 100000000L, 1000000000L};	// Measured in bytes
 	public static final String[] BUFFER_LABELS			  = new String[] {"1 KB (most stable)", "10 KB", "100 KB", "1 MB",
 																  "10 MB", "100 MB", "1 GB (fastest)"};
+	public static final int[] IO_CONCURRENCY_VALUES	  = new int[] {1, 2, 4, 8, 16};	// Files written at once (e.g. File Split parts)
+	public static final String[] IO_CONCURRENCY_LABELS  = new String[] {"1 (HDD)", "2", "4", "8", "16 (NVMe)"};
 	public static final int[] SCAN_WINDOW_VALUES		  = new int[] {1, 2, 5, 10, 20, 30};	// Measured in seconds
 	public static final String[] SCAN_WINDOW_LABELS	  	  = new String[] {"1 (fastest)", "2", "5", "10", "20", "30 (most accurate)"};
 	public static final int[] OPTIMISATION_VALUES		  = new int[] {0, 1, 2, 5};
@@ -88,6 +125,8 @@ public class Config {
 																			"%.4f", "%.5f", "%.6f"};
 	public static final String[] LINEAR_SCAN_MODE_VALUES  = new String[] {SIGNAL_CUTOUT, SIGNAL_GRADIENT, DUAL_COMBINED, DUAL_SEPARATE};
 	public static final String[] LINEAR_SCAN_MODE_LABELS  = new String[] {SIGNAL_CUTOUT, SIGNAL_GRADIENT, DUAL_COMBINED, DUAL_SEPARATE};
+	public static final String[] JOB_ORDER_VALUES		  = new String[] {AS_LISTED, SMALLEST_FIRST, LARGEST_FIRST};	// Order of batches and files
+	public static final String[] JOB_ORDER_LABELS		  = new String[] {AS_LISTED, SMALLEST_FIRST, LARGEST_FIRST};
 			// OUTPUT
 	public static final int[][] RESOLUTION_VALUES		  = new int[][] {{1280, 720},		// HD	(width, height)
 																		{1920, 1080},		// FHD
@@ -113,7 +152,7 @@ public class Config {
 	//----------------------------------------
 	// COMPLEX STRINGS
 	//----------------------------------------
-	public static final String INFO_TEXT = "This application can be used to find artifacts in audio files generated by signal processors. It analyses the signal variance across the audio duration, then generates a graph of the results.\n\nThe following types of audio can analysed:\n    * Music\n    * Sine Tones\n    * Noise (White, Pink, etc)\n\nWhen analysing a music loop, users can provide an estimate of the loop's length using maximum and minimum values, or they can specify the length using musical metrics (i.e. tempo and number of beats). The application can also detect the loop length automatically, but this method is slow. When analysing sine tones or noise, the program will treat the signal as a series of short loops.\n\nThis application also includes a linear audio scanner, which can analyse the integrity of both looped and non-looped recordings by measuring frame loss probability. Multiple scanning algorithms are available, and they can be combined to increase the chance of successful detection.\n\nIf the audio recording is split across multiple files, they can be loaded into this application collectively and will be treated as a single stream. Multiple batches can also be loaded, in order to process multiple recordings in one continuous operation. The scanners can only process audio files up to " + String.valueOf(Math.floor(LOOP_SCAN_FILE_SIZE_LIMIT / 100000000.0) / 10.0) + "GB, but the file splitter can be used to break up large WAV files into smaller ones.\n\nMaximum Supported Audio Quality: " + MAXIMUM_AUDIO_BIT_DEPTH + "-bit/" + (float) MAXIMUM_AUDIO_SAMPLE_RATE / 1000.0 + " kHz\nSupported Audio File Formats: " + String.join(", ", LOOP_SCAN_SUPPORTED_FORMATS).toUpperCase() + "\n    (File splitter only supports WAV)";
+	public static final String INFO_TEXT = "This application can be used to find artifacts in audio files generated by signal processors. It analyses the signal variance across the audio duration, then generates a graph of the results.\n\nThe following types of audio can analysed:\n    * Music\n    * Sine Tones\n    * Noise (White, Pink, etc)\n\nWhen analysing a music loop, users can provide an estimate of the loop's length using maximum and minimum values, or they can specify the length using musical metrics (i.e. tempo and number of beats). The application can also detect the loop length automatically. When analysing sine tones or noise, the program will treat the signal as a series of short loops.\n\nThis application also includes a linear audio scanner, which can analyse the integrity of both looped and non-looped recordings by measuring frame loss probability. Multiple scanning algorithms are available, and they can be combined to increase the chance of successful detection.\n\nIf the audio recording is split across multiple files, they can be loaded into this application collectively and will be treated as a single stream. Multiple batches can also be loaded, in order to process multiple recordings in one continuous operation. There is no limit on the size of the audio files (WAV files larger than 4GB must use the RF64 or BW64 format), and the file splitter can be used to break up large WAV files into smaller ones.\n\nMaximum Supported Audio Quality: " + MAXIMUM_AUDIO_BIT_DEPTH + "-bit/" + (float) MAXIMUM_AUDIO_SAMPLE_RATE / 1000.0 + " kHz\nSupported Audio File Formats: " + String.join(", ", LOOP_SCAN_SUPPORTED_FORMATS).toUpperCase() + "\n    (File splitter only supports WAV)";
 	//----------------------------------------
 	// GUI DIMENSIONS
 	//----------------------------------------
@@ -148,11 +187,13 @@ public class Config {
 		// OPTIONS
 			// GENERAL
 	public static final int BUFFER_SIZE_INDEX_DEFAULT				= 6;
+	public static final int IO_CONCURRENCY_INDEX_DEFAULT			= 0;
 	public static final int AUTO_SCAN_WINDOW_INDEX_DEFAULT			= 3;
 	public static final int SINE_SCAN_WINDOW_INDEX_DEFAULT			= 2;
 	public static final int NOISE_SCAN_WINDOW_INDEX_DEFAULT 		= 3;
 	public static final int OPTIMISATION_INDEX_DEFAULT				= 1;
 	public static final int LINEAR_SCAN_MODE_INDEX_DEFAULT			= 2;
+	public static final int JOB_ORDER_INDEX_DEFAULT					= 0;
 			// OUTPUT
 	public static final int OUTPUT_FORMAT_INDEX_DEFAULT				= 0;
 	public static final int OUTPUT_RESOLUTION_INDEX_DEFAULT			= 2;
@@ -171,11 +212,13 @@ public class Config {
 		// OPTIONS
 			// GENERAL
 	public static int BUFFER_SIZE_INDEX					= BUFFER_SIZE_INDEX_DEFAULT;
+	public static int IO_CONCURRENCY_INDEX				= IO_CONCURRENCY_INDEX_DEFAULT;
 	public static int AUTO_SCAN_WINDOW_INDEX			= AUTO_SCAN_WINDOW_INDEX_DEFAULT;
 	public static int SINE_SCAN_WINDOW_INDEX			= SINE_SCAN_WINDOW_INDEX_DEFAULT;
 	public static int NOISE_SCAN_WINDOW_INDEX 			= NOISE_SCAN_WINDOW_INDEX_DEFAULT;
 	public static int OPTIMISATION_INDEX				= OPTIMISATION_INDEX_DEFAULT;
 	public static int LINEAR_SCAN_MODE_INDEX			= LINEAR_SCAN_MODE_INDEX_DEFAULT;
+	public static int JOB_ORDER_INDEX					= JOB_ORDER_INDEX_DEFAULT;
 			// OUTPUT
 	public static int OUTPUT_FORMAT_INDEX				= OUTPUT_FORMAT_INDEX_DEFAULT;
 	public static int OUTPUT_RESOLUTION_INDEX			= OUTPUT_RESOLUTION_INDEX_DEFAULT;
@@ -0,0 +1,41 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.util.*;
+
+// Reduces a graph series to at most two points per pixel column of the output resolution.
+// Every point in a column is drawn over the same pixels, so keeping each column's minimum and maximum (in their original
+// order) draws the same line as the full series, and spikes/dropouts always survive (unlike averaging or LTTB).
+public class DecimationEngine {
+	// Returns the indices of the points to plot (in ascending order)
+	public static int[] getPointIndices(double[] data, int columns) {
+		if (!Config.DECIMATE_GRAPH_DATA || columns < 1 || data.length <= columns * 2) {
+			int[] indices = new int[data.length];
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = i;
+			}
+			return indices;
+		}
+		int[] indices = new int[columns * 2];
+		int count = 0;
+		for (int c = 0; c < columns; c++) {
+			int from = (int) (((long) c * data.length) / columns);
+			int to = (int) (((long) (c + 1) * data.length) / columns);
+			int min = from;
+			int max = from;
+			for (int i = from + 1; i < to; i++) {
+				if (data[i] < data[min]) min = i;
+				if (data[i] > data[max]) max = i;
+			}
+			indices[count++] = Math.min(min, max);
+			if (min != max) {
+				indices[count++] = Math.max(min, max);
+			}
+		}
+		return Arrays.copyOf(indices, count);
+	}
+}
@@ -9,7 +9,9 @@ import java.awt.Color;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
+import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.scene.control.TextArea;
 
@@ -36,8 +38,13 @@ public class FileProcessingTask extends Task<Void> {
 	public TextArea textOutput;
 	public String outputProgressText;
 	public long lastProgressOutputTime;	// Milliseconds; regulates frequency of text output to prevent crashes
+	private volatile int lastProgressPercentage;	// Only one thread reports progress at a time (see PipelineExecutor.isLive)
+	private volatile boolean cancelRequested;
+	private MemoryBudget memoryBudget;		// Shared by every file that is processed during a run
 	
-	public FileProcessingTask() { }
+	public FileProcessingTask() {
+		this.messageProperty().addListener((observable, oldValue, newValue) -> showProgress(newValue));
+	}
 	
 	public void initialise(String tool, ArrayList<ExecutionBatch> batchList, int currentBatch,
 							boolean useMultipleBatches, boolean deleteOriginal, boolean generateGraph, TextArea textOutput) {
@@ -50,107 +57,173 @@ public class FileProcessingTask extends Task<Void> {
 		this.textOutput = textOutput;
 		this.outputProgressText = "";
 		this.lastProgressOutputTime = -1;	// Uninitialised
+		this.lastProgressPercentage = -1;
 	}
 	
 	@Override
 	protected Void call() throws Exception {
 		try {
-			for (int b = 0; b < batchList.size(); b++) {
-				if (!useMultipleBatches) {
-					b = currentBatch;
+			memoryBudget = new MemoryBudget(getMemoryBudget());
+			if (!useMultipleBatches) {
+				runBatch(batchList.get(currentBatch));
+			} else {
+				runBatches();
+			}
+		} catch (Exception e) {
+			this.printOut(e.toString(), true);
+		} finally {
+			if (tool.equals(Config.LOOP_SCAN)) {
+				this.printOut("All done! Check 'AS Loop' files for analysis results.", true);
+			} else if (tool.equals(Config.LINEAR_SCAN)) {
+				this.printOut("All done! Check 'AS Linear' files for analysis results.", true);
+			} else if (tool.equals(Config.FILE_SPLIT)) {
+				this.printOut("All done! Output files end with (1), (2), etc.", true);
+			} else if (tool.equals(Config.ANALYSE_GAIN)) {
+				if (this.generateGraph) {
+					this.printOut("All done! Check 'AS Gain' files for analysis results.", true);
+				} else {
+					this.printOut("All done!", true);
 				}
-				ExecutionBatch batch = batchList.get(b);
-				if (tool.equals(Config.LOOP_SCAN)) {
-					ArrayList<File> openFiles = batch.openFiles;
-					if (openFiles.size() < 1) continue;
-					int loopType = batch.loopIndex;
-					int param1 = batch.param1;
-					int param2 = batch.param2;
-					File outputLocation = batch.outputLocation;
-					boolean useInputFolder = batch.useInputFolder;
-					boolean autoLengthDetection = (batch.loopIndex == 2);
-					int minLoop = -1;	// i.e. Uninitialised
-					int maxLoop = -1;
-					if (loopType == 0) {
-						double tempo = param1;
-						double beats = param2;
-						minLoop = (int) Math.floor((60.0 / tempo) * beats) - 2;
-						maxLoop = (int) Math.ceil((60.0 / tempo) * beats) + 2;
-					}
-					else if (loopType == 1) {
-						minLoop = param1;
-						maxLoop = param2;
-					}
-					int loopLength = -1;
-					int loopFrameRate = -1;
-					for (File file : openFiles) {
-						if (taskCancelled()) return null;
-						String fileName = file.getName();
-						this.printOut("Loading file: " + fileName, true, false);
-						if (taskCancelled()) return null;
-						AudioData audioData = getAudioData(file);
-						int[] data = audioData.data;
-						AudioFormat metaData = audioData.metaData;
-						int currentSampleRate = Math.round(metaData.getSampleRate());
-						if (taskCancelled()) return null;
-						if ((loopType == 0 || loopType == 1 || loopType == 2)) {	// Music
-							if (loopLength == -1) {		// Occurs during the first file in a batch
-								this.printOut("Calculating length of audio loop...", true, false);
+			}
+			BufferPool pool = BufferPool.SHARED;
+			if (pool.getHits() + pool.getMisses() > 0) {
+				this.printOut("Buffer pool: " + pool.getHits() + " hits, " + pool.getMisses() + " misses (" +
+							  String.format("%.1f", pool.getPooledBytes() / 1000000.0) + " MB pooled)", true);
+			}
+			this.printOut("----------------------------------------", true);
+			pool.clear();	// Pooled buffers aren't kept between runs
+			if (memoryBudget != null) memoryBudget.close();
+			System.gc();
+			if (taskCancelled()) return null;	// Ensures correct text output before end of program execution
+			return null;
+		}
+	}
+	
+	// Runs the selected tool on the files of a single batch
+	private void runBatch(ExecutionBatch batch) throws Exception {
+		if (tool.equals(Config.LOOP_SCAN)) {
+			ArrayList<File> openFiles = getScheduledFiles(batch.openFiles, batch.loopIndex <= 2);	// The first music file sets the loop length
+			if (openFiles.size() < 1) return;
+			int loopType = batch.loopIndex;
+			int param1 = batch.param1;
+			int param2 = batch.param2;
+			File outputLocation = batch.outputLocation;
+			boolean useInputFolder = batch.useInputFolder;
+			boolean autoLengthDetection = (batch.loopIndex == 2);
+			int minLoop = -1;	// i.e. Uninitialised
+			int maxLoop = -1;
+			if (loopType == 0) {
+				double tempo = param1;
+				double beats = param2;
+				minLoop = (int) Math.floor((60.0 / tempo) * beats) - 2;
+				maxLoop = (int) Math.ceil((60.0 / tempo) * beats) + 2;
+			}
+			else if (loopType == 1) {
+				minLoop = param1;
+				maxLoop = param2;
+			}
+			int batchMinLoop = minLoop;
+			int batchMaxLoop = maxLoop;
+			CompletableFuture<int[]> batchLoop = new CompletableFuture<int[]>();	// {loop length, frame rate} of the first file
+			PipelineExecutor pipeline = new PipelineExecutor(this);
+			pipeline.setMemoryBudget(memoryBudget, 2, (index) ->		// Reserved until the file has been analysed
+									 MemoryEstimator.estimate(tool, openFiles.get(index), loopType <= 2 && index == 0));
+			pipeline.addStage("decode", Config.PIPELINE_DECODE_THREADS, (index, input) -> {
+				File file = openFiles.get(index);
+				this.printOut("Loading file: " + file.getName(), true);
+				if (taskCancelled()) return null;
+				return getAudioData(file);
+			});
+			pipeline.addStage("analysis", Config.PIPELINE_ANALYSIS_THREADS, (index, input) -> {
+				File file = openFiles.get(index);
+				AudioData audioData = (AudioData) input;
+				try (SampleStore data = audioData.data) {	// Frees the decoded audio once it has been analysed
+					AudioFormat metaData = audioData.metaData;
+					int currentSampleRate = Math.round(metaData.getSampleRate());
+					if (taskCancelled()) return null;
+					int loopLength;
+					int loopFrameRate;
+					if ((loopType == 0 || loopType == 1 || loopType == 2)) {	// Music
+						if (index == 0) {		// The first file in a batch sets the loop length for the whole batch
+							try {
+								this.printOut("Calculating length of audio loop...", true);
 								loopFrameRate = currentSampleRate;
-								loopLength = getLoopLength(data, loopFrameRate, minLoop, maxLoop, autoLengthDetection);
+								loopLength = getLoopLength(data, loopFrameRate, batchMinLoop, batchMaxLoop, autoLengthDetection);
 								if (taskCancelled()) return null;
 								if (loopLength == -1) {
 									throw new Exception("Error: Unable to calculate length of audio loop");
 								}
-							}	// For all subsequent files in a batch, no action is required
-						} else if (loopType == 3) {		// Sine Tone
-							loopLength = currentSampleRate * Config.SCAN_WINDOW_VALUES[Config.SINE_SCAN_WINDOW_INDEX];
-							loopFrameRate = currentSampleRate;
-						} else if (loopType == 4) {		// Noise
-							loopLength = currentSampleRate * Config.SCAN_WINDOW_VALUES[Config.NOISE_SCAN_WINDOW_INDEX];
-							loopFrameRate = currentSampleRate;
+								batchLoop.complete(new int[] {loopLength, loopFrameRate});
+							} finally {
+								batchLoop.complete(null);	// Releases the other files if no loop length was found
+							}
 						} else {
-							throw new Exception("Error: Invalid loop type");
+							int[] loop = getBatchLoop(batchLoop);
+							if (loop == null) return null;
+							loopLength = loop[0];
+							loopFrameRate = loop[1];
 						}
-						int currentLoopLength = Math.round(((float)currentSampleRate / (float)loopFrameRate) * (float)loopLength);
-						this.printOut("Analysing audio quality...", true, false);
-						double[] variances = getLoopVariances(currentLoopLength, data, currentSampleRate);
-						if (taskCancelled()) return null;
-						this.printOut("Generating output files...", true, false);
-						File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
-						drawAnalyticsOne(currentSampleRate, variances, fileName, outputPath, Config.LOOP_SCAN, "");
-						if (taskCancelled()) return null;
-						this.printOut("Analysis complete!", true, false);
+					} else if (loopType == 3) {		// Sine Tone
+						loopLength = currentSampleRate * Config.SCAN_WINDOW_VALUES[Config.SINE_SCAN_WINDOW_INDEX];
+						loopFrameRate = currentSampleRate;
+					} else if (loopType == 4) {		// Noise
+						loopLength = currentSampleRate * Config.SCAN_WINDOW_VALUES[Config.NOISE_SCAN_WINDOW_INDEX];
+						loopFrameRate = currentSampleRate;
+					} else {
+						throw new Exception("Error: Invalid loop type");
 					}
-				} else if (tool.equals(Config.LINEAR_SCAN)) {
-					ArrayList<File> openFiles = batch.openFiles;
-					if (openFiles.size() < 1) continue;
-					File outputLocation = batch.outputLocation;
-					boolean useInputFolder = batch.useInputFolder;
-					for (File file : openFiles) {
+					int currentLoopLength = Math.round(((float)currentSampleRate / (float)loopFrameRate) * (float)loopLength);
+					this.printOut("Analysing audio quality...", true);
+					double[] variances = getLoopVariances(currentLoopLength, data, currentSampleRate);
+					if (taskCancelled()) return null;
+					return (Callable<Void>) () -> {
+						this.printOut("Generating output files...", true);
+						File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
+						drawAnalyticsOne(currentSampleRate, variances, file.getName(), outputPath, Config.LOOP_SCAN, "");
 						if (taskCancelled()) return null;
-						String fileName = file.getName();
-						this.printOut("Loading file: " + fileName, true, false);
+						this.printOut("Analysis complete!", true);
+						return null;
+					};
+				}
+			});
+			runFilePipeline(pipeline, openFiles.size());
+		} else if (tool.equals(Config.LINEAR_SCAN)) {
+			ArrayList<File> openFiles = getScheduledFiles(batch.openFiles, false);
+			if (openFiles.size() < 1) return;
+			File outputLocation = batch.outputLocation;
+			boolean useInputFolder = batch.useInputFolder;
+			PipelineExecutor pipeline = new PipelineExecutor(this);
+			pipeline.setMemoryBudget(memoryBudget, 2, (index) -> MemoryEstimator.estimate(tool, openFiles.get(index), false));
+			pipeline.addStage("decode", Config.PIPELINE_DECODE_THREADS, (index, input) -> {
+				File file = openFiles.get(index);
+				this.printOut("Loading file: " + file.getName(), true);
+				if (taskCancelled()) return null;
+				return AudioFileReader.open(file);	// Samples are streamed rather than loaded into memory
+			});
+			pipeline.addStage("analysis", Config.PIPELINE_ANALYSIS_THREADS, (index, input) -> {
+				File file = openFiles.get(index);
+				String fileName = file.getName();
+				try (AudioFileReader reader = (AudioFileReader) input) {
+					AudioFormat metaData = reader.metaData;
+					int currentSampleRate = Math.round(metaData.getSampleRate());
+					if (taskCancelled()) return null;
+					File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
+					String linearScanMode = Config.LINEAR_SCAN_MODE_VALUES[Config.LINEAR_SCAN_MODE_INDEX];
+					LinearScanEngine engine = new LinearScanEngine(this);
+					Callable<Void> render;
+					if (linearScanMode.equals(Config.DUAL_COMBINED) || linearScanMode.equals(Config.DUAL_SEPARATE)) {
+						this.printOut("Analysing audio quality...", true);
+						double[][] results = engine.scan(reader, new LinearScanEngine.Detector[] {
+							new LinearScanEngine.SignalCutoutDetector(), new LinearScanEngine.SignalGradientDetector()
+						});		// Both detectors share a single pass over the audio
+						double[] cutoutProbabilities = results[0];
+						double[] gradientProbabilities = results[1];
 						if (taskCancelled()) return null;
-						AudioData audioData = getAudioData(file);
-						int[] data = audioData.data;
-						AudioFormat metaData = audioData.metaData;
-						int currentSampleRate = Math.round(metaData.getSampleRate());
-						int bitDepth = metaData.getSampleSizeInBits();
+						this.printOut("Consolidating analysis results...", true);
+						normaliseDatasets(cutoutProbabilities, gradientProbabilities);
 						if (taskCancelled()) return null;
-						File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
-						String linearScanMode = Config.LINEAR_SCAN_MODE_VALUES[Config.LINEAR_SCAN_MODE_INDEX];
-						if (linearScanMode.equals(Config.DUAL_COMBINED) || linearScanMode.equals(Config.DUAL_SEPARATE)) {
-							this.printOut("Analysing audio quality (1/2)...", true, false);
-							double[] cutoutProbabilities = getSignalCutoutData(data, currentSampleRate, bitDepth);
-							if (taskCancelled()) return null;
-							this.printOut("Analysing audio quality (2/2)...", true, false);
-							double[] gradientProbabilities = getSignalGradientData(data, currentSampleRate, bitDepth);
-							if (taskCancelled()) return null;
-							this.printOut("Consolidating analysis results...", true, false);
-							normaliseDatasets(cutoutProbabilities, gradientProbabilities);
-							if (taskCancelled()) return null;
-							this.printOut("Generating output files...", true, false);
+						render = () -> {
+							this.printOut("Generating output files...", true);
 							if (linearScanMode.equals(Config.DUAL_COMBINED)) {
 								drawAnalyticsTwo(currentSampleRate, cutoutProbabilities, gradientProbabilities,
 												 fileName, outputPath, Config.LINEAR_SCAN, "");
@@ -160,144 +233,280 @@ public class FileProcessingTask extends Task<Void> {
 								drawAnalyticsOne(currentSampleRate, gradientProbabilities, fileName, outputPath,
 												 Config.LINEAR_SCAN, "[AS Linear 2]");
 							}
-						} else if (linearScanMode.equals(Config.SIGNAL_CUTOUT) || linearScanMode.equals(Config.SIGNAL_GRADIENT)) {
-							this.printOut("Analysing audio quality...", true, false);
-							double[] probabilities = {};
-							if (linearScanMode.equals(Config.SIGNAL_CUTOUT)) {
-								probabilities = getSignalCutoutData(data, currentSampleRate, bitDepth);
-							} else { // if linearScanMode.equals(Config.SIGNAL_GRADIENT)
-								probabilities = getSignalGradientData(data, currentSampleRate, bitDepth);
-							}
-							if (taskCancelled()) return null;
-							this.printOut("Generating output files...", true, false);
-							drawAnalyticsOne(currentSampleRate, probabilities, fileName, outputPath, Config.LINEAR_SCAN, "");
-						} else {
-							throw new Exception("Error: Invalid linear scan mode");
+							return null;
+						};
+					} else if (linearScanMode.equals(Config.SIGNAL_CUTOUT) || linearScanMode.equals(Config.SIGNAL_GRADIENT)) {
+						this.printOut("Analysing audio quality...", true);
+						LinearScanEngine.Detector detector;
+						if (linearScanMode.equals(Config.SIGNAL_CUTOUT)) {
+							detector = new LinearScanEngine.SignalCutoutDetector();
+						} else { // if linearScanMode.equals(Config.SIGNAL_GRADIENT)
+							detector = new LinearScanEngine.SignalGradientDetector();
 						}
+						double[] probabilities = engine.scan(reader, new LinearScanEngine.Detector[] {detector})[0];
 						if (taskCancelled()) return null;
-						this.printOut("Analysis complete!", true, false);
+						render = () -> {
+							this.printOut("Generating output files...", true);
+							drawAnalyticsOne(currentSampleRate, probabilities, fileName, outputPath, Config.LINEAR_SCAN, "");
+							return null;
+						};
+					} else {
+						throw new Exception("Error: Invalid linear scan mode");
 					}
-				} else if (tool.equals(Config.FILE_SPLIT)) {
-					ArrayList<File> openFiles = batch.openFiles;
-					if (openFiles.size() < 1) continue;
-					File outputLocation = batch.outputLocation;
-					boolean useInputFolder = batch.useInputFolder;
-					float splitLimit = batch.splitSizeValue;		// Measured in GB
-					for (File file : openFiles) {
+					return (Callable<Void>) () -> {
+						render.call();
 						if (taskCancelled()) return null;
-						String fileName = file.getName();
-						File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
-						this.printOut("Splitting file: " + fileName, true, false);
-						if (batch.splitTypeValue == Config.TIME) {
-							AudioFormat metaData = getAudioData(file).metaData;
-							long sampleRate = Math.round(metaData.getSampleRate());
-							long bitDepth = metaData.getSampleSizeInBits();
-							long channels = metaData.getChannels();
-							long splitMin = Math.max(batch.splitTimeMin, 0);
-							long splitSec = Math.max(batch.splitTimeSec, 0);
-							splitLimit = ((splitMin * 60 + splitSec)
-											* sampleRate * (bitDepth / 8) * channels) / 1000000000.0f;
-						}
-						ArrayList<File> tempFiles = new ArrayList<File>();
-						splitAudioFile(file, outputPath, splitLimit, tempFiles);
-						for (File tempFile : tempFiles) {
-							tempFile.delete();
-						}
-						tempFiles.clear();
-						if (taskCancelled()) return null;
-						this.printOut("File splitting complete!", true, false);
+						this.printOut("Analysis complete!", true);
+						return null;
+					};
+				}
+			});
+			runFilePipeline(pipeline, openFiles.size());
+		} else if (tool.equals(Config.FILE_SPLIT)) {
+			ArrayList<File> openFiles = getScheduledFiles(batch.openFiles, false);
+			if (openFiles.size() < 1) return;
+			File outputLocation = batch.outputLocation;
+			boolean useInputFolder = batch.useInputFolder;
+			float splitLimit = batch.splitSizeValue;		// Measured in GB
+			for (File file : openFiles) {
+				if (taskCancelled()) return;
+				String fileName = file.getName();
+				File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
+				this.printOut("Splitting file: " + fileName, true);
+				AudioFileReader.DataChunk chunk = AudioFileReader.getDataChunk(file);	// Null if not parsed natively
+				if (batch.splitTypeValue == Config.TIME) {
+					AudioFormat metaData = (chunk != null) ? chunk.metaData : AudioSystem.getAudioFileFormat(file).getFormat();
+					long sampleRate = Math.round(metaData.getSampleRate());
+					long bitDepth = metaData.getSampleSizeInBits();
+					long channels = metaData.getChannels();
+					long splitMin = Math.max(batch.splitTimeMin, 0);
+					long splitSec = Math.max(batch.splitTimeSec, 0);
+					splitLimit = ((splitMin * 60 + splitSec)
+									* sampleRate * (bitDepth / 8) * channels) / 1000000000.0f;
+				}
+				if (chunk != null && new FileSplitEngine(this).split(file, chunk, outputPath, splitLimit)) {
+					if (this.deleteOriginal && !taskCancelled()) {
+						file.delete();
 					}
-				} else if (tool.equals(Config.ANALYSE_GAIN)) {
-					ArrayList<File> openFiles = batch.openFiles;
-					if (openFiles.size() < 1) continue;
-					File outputLocation = batch.outputLocation;
-					boolean useInputFolder = batch.useInputFolder;
-					float waveformWindow = batch.waveformValue;		// Measured in seconds
-					String placeholder = Config.GAIN_PRECISION_PLACEHOLDERS[batch.gainPrecisionIndex];
-					for (File file : openFiles) {
-						if (taskCancelled()) return null;
-						String fileName = file.getName();
-						this.printOut("Analysing file: " + fileName, true, false);
-						if (taskCancelled()) return null;
-						AudioData audioData = getAudioData(file);
-						int[] data = audioData.data;
-						AudioFormat metaData = audioData.metaData;
-						int bitDepth = metaData.getSampleSizeInBits();
-						if (taskCancelled()) return null;
-						double waveformData[] = getWaveformData(data, bitDepth);	// {Peak, RMS} (dBFS)
-						File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
-						if (this.generateGraph) {
-							this.printOut("Generating output files...", true, false);
-							drawWaveform(metaData, data, fileName, outputPath, waveformWindow, "");
-						}
-						this.printOut(String.format("File Peak: " + placeholder + " dBFS", waveformData[0]), true, false);
-						this.printOut(String.format("File RMS: " + placeholder + " dBFS", waveformData[1]), true, false);
-						this.printOut("--------------------", true, false);
-						if (taskCancelled()) return null;
+				} else {	// Fallback for WAV files that can't be parsed natively
+					ArrayList<File> tempFiles = new ArrayList<File>();
+					splitAudioFile(file, outputPath, splitLimit, tempFiles);
+					for (File tempFile : tempFiles) {
+						tempFile.delete();
 					}
+					tempFiles.clear();
 				}
-				if (!useMultipleBatches) {
-					break;
-				} else {
-					this.printOut("--- Batch " + String.valueOf(b + 1) + "/" + String.valueOf(batchList.size()) +
-								  " completed ---", true, false);
-					this.printOut("----------------------------------------", true, false);
-				}
+				if (taskCancelled()) return;
+				this.printOut("File splitting complete!", true);
 			}
-		} catch (Exception e) {
-			this.printOut(e.toString(), true, false);
-		} finally {
-			if (tool.equals(Config.LOOP_SCAN)) {
-				this.printOut("All done! Check 'AS Loop' files for analysis results.", true, false);
-			} else if (tool.equals(Config.LINEAR_SCAN)) {
-				this.printOut("All done! Check 'AS Linear' files for analysis results.", true, false);
-			} else if (tool.equals(Config.FILE_SPLIT)) {
-				this.printOut("All done! Output files end with (1), (2), etc.", true, false);
-			} else if (tool.equals(Config.ANALYSE_GAIN)) {
-				if (this.generateGraph) {
-					this.printOut("All done! Check 'AS Gain' files for analysis results.", true, false);
-				} else {
-					this.printOut("All done!", true, false);
+		} else if (tool.equals(Config.ANALYSE_GAIN)) {
+			ArrayList<File> openFiles = getScheduledFiles(batch.openFiles, false);
+			if (openFiles.size() < 1) return;
+			File outputLocation = batch.outputLocation;
+			boolean useInputFolder = batch.useInputFolder;
+			float waveformWindow = batch.waveformValue;		// Measured in seconds
+			String placeholder = Config.GAIN_PRECISION_PLACEHOLDERS[batch.gainPrecisionIndex];
+			PipelineExecutor pipeline = new PipelineExecutor(this);
+			pipeline.setMemoryBudget(memoryBudget, 2, (index) -> MemoryEstimator.estimate(tool, openFiles.get(index), false));
+			pipeline.addStage("decode", Config.PIPELINE_DECODE_THREADS, (index, input) -> {
+				File file = openFiles.get(index);
+				this.printOut("Analysing file: " + file.getName(), true);
+				if (taskCancelled()) return null;
+				return AudioFileReader.open(file);
+			});
+			pipeline.addStage("analysis", Config.PIPELINE_ANALYSIS_THREADS, (index, input) -> {
+				File file = openFiles.get(index);
+				GainAnalysisEngine engine = new GainAnalysisEngine(this);	// Streams the file (constant memory)
+				try (AudioFileReader reader = (AudioFileReader) input) {
+					engine.analyse(reader, waveformWindow);
 				}
-			}
-			this.printOut("----------------------------------------", true, false);
-			System.gc();
-			if (taskCancelled()) return null;	// Ensures correct text output before end of program execution
-			return null;
+				if (taskCancelled()) return null;
+				return (Callable<Void>) () -> {
+					File outputPath = useInputFolder ? file.getParentFile() : outputLocation;
+					if (this.generateGraph) {
+						this.printOut("Generating output files...", true);
+						drawWaveform(engine.windowPeaks, engine.windowRms, file.getName(), outputPath, waveformWindow, "");
+					}
+					this.printOut(String.format("File Peak: " + placeholder + " dBFS", engine.peak), true);
+					this.printOut(String.format("File RMS: " + placeholder + " dBFS", engine.rms), true);
+					this.printOut("--------------------", true);
+					return null;
+				};
+			});
+			runFilePipeline(pipeline, openFiles.size());
 		}
 	}
 
-	public void printOut(Object text, boolean newLine, boolean progressIndication) {
-		long currentTime = System.currentTimeMillis();
-		if (!progressIndication || this.lastProgressOutputTime == -1 ||		// -1 = uninitialised
-			currentTime - this.lastProgressOutputTime > Config.PROGRESS_REFRESH_VALUES[Config.PROGRESS_REFRESH_INDEX]) {
-			if (!outputProgressText.isEmpty()) {	// Erase previous progress indication before printing new text
-				int deleteStart = this.textOutput.getLength() - outputProgressText.length();
-				int deleteEnd = this.textOutput.getLength();
-				this.textOutput.deleteText(deleteStart, deleteEnd);
-				this.outputProgressText = "";
+	// Runs independent batches at the same time (up to MAX_CONCURRENT_BATCHES), in the selected job order.
+	// Memory is reserved by each file rather than each batch (see setMemoryBudget), so a batch can start as soon as a
+	// thread is free, and its files wait until they fit in the memory budget alongside the other batches' files.
+	// Each batch's output is printed as a group, in job order (batches that finish early are held until their turn).
+	private void runBatches() throws Exception {
+		long[] sizes = new long[batchList.size()];
+		for (int b = 0; b < sizes.length; b++) {
+			for (File file : batchList.get(b).openFiles) {
+				sizes[b] += MemoryEstimator.estimate(tool, file, false);
+			}
+		}
+		int[] order = getJobOrder(sizes, 0);
+		PipelineExecutor batches = new PipelineExecutor(this);
+		batches.addStage("batch", Config.MAX_CONCURRENT_BATCHES, (index, input) -> {
+			int b = order[index];
+			ExecutionBatch batch = batchList.get(b);
+			if (batch.openFiles.size() < 1) return null;
+			runBatch(batch);
+			if (taskCancelled()) return null;
+			this.printOut("--- Batch " + String.valueOf(b + 1) + "/" + String.valueOf(batchList.size()) +
+						  " completed ---", true);
+			this.printOut("----------------------------------------", true);
+			return batch;
+		});
+		batches.run(batchList.size());
+	}
+	
+	// Bytes available to files (the fixed 1GB of the readme's memory formula is reserved for the application itself)
+	private long getMemoryBudget() {
+		long total = (Config.BATCH_MEMORY_BUDGET > 0) ? Config.BATCH_MEMORY_BUDGET : Runtime.getRuntime().maxMemory();
+		return Math.max(0, total - Config.BASE_MEMORY);
+	}
+	
+	// Returns the files in the selected job order (ordered by their estimated memory, which is proportional to their length)
+	private ArrayList<File> getScheduledFiles(ArrayList<File> files, boolean keepFirst) {
+		long[] sizes = new long[files.size()];
+		for (int f = 0; f < sizes.length; f++) {
+			sizes[f] = MemoryEstimator.estimate(tool, files.get(f), false);
+		}
+		ArrayList<File> scheduledFiles = new ArrayList<File>();
+		for (int f : getJobOrder(sizes, keepFirst ? 1 : 0)) {
+			scheduledFiles.add(files.get(f));
+		}
+		return scheduledFiles;
+	}
+	
+	// Returns the indices of 'sizes' in the selected job order (the first 'fixed' indices keep their positions, and equal
+	// sizes keep their listed order)
+	private int[] getJobOrder(long[] sizes, int fixed) {
+		Integer[] order = new Integer[sizes.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		String jobOrder = Config.JOB_ORDER_VALUES[Config.JOB_ORDER_INDEX];
+		if (jobOrder.equals(Config.SMALLEST_FIRST)) {
+			Arrays.sort(order, Math.min(fixed, order.length), order.length, (a, b) -> Long.compare(sizes[a], sizes[b]));
+		} else if (jobOrder.equals(Config.LARGEST_FIRST)) {
+			Arrays.sort(order, Math.min(fixed, order.length), order.length, (a, b) -> Long.compare(sizes[b], sizes[a]));
+		}
+		int[] indices = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			indices[i] = order[i];
+		}
+		return indices;
+	}
+	
+	// Adds a render stage (which runs the Callable returned by the last stage) and processes every file of a batch
+	private void runFilePipeline(PipelineExecutor pipeline, int fileCount) throws Exception {
+		pipeline.addStage("render", Config.PIPELINE_RENDER_THREADS, (index, input) -> {
+			if (pipeline.getPredictedMemory(index) >= 0) {		// Memory used while decoding and analysing the file
+				this.printOut("    Memory: " + String.format("%.1f", pipeline.getPredictedMemory(index) / 1000000.0) +
+							  " MB predicted, " + String.format("%.1f", pipeline.getPeakMemory(index) / 1000000.0) +
+							  " MB peak", true);
 			}
-			if (newLine) text += "\n";
-			if (progressIndication) {
-				this.outputProgressText = text.toString();	// Update the variable that stores the last progress text
-				this.lastProgressOutputTime = currentTime;	// Update the time of the last progress text output
+			return ((Callable<?>) input).call();
+		});
+		pipeline.run(fileCount);
+	}
+	
+	// Waits for the first file of a batch to set the loop length (returns null if it couldn't, or the task was cancelled)
+	private int[] getBatchLoop(CompletableFuture<int[]> batchLoop) throws Exception {
+		while (!taskCancelled()) {
+			try {
+				return batchLoop.get(Config.LOOP_SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				continue;
 			}
-			this.textOutput.appendText("" + text);	// appendText is needed to scroll to the bottom
+		}
+		return null;
+	}
+	
+	// Text is appended on the FX application thread (in the same queue as progress messages, so the order is kept).
+	// Text from pipeline stages is printed in file order (see PipelineExecutor).
+	public void printOut(Object text, boolean newLine) {
+		String output = newLine ? text + "\n" : text.toString();
+		if (!PipelineExecutor.printInOrder(output)) {
+			printNow(output);
+		}
+	}
+	
+	public void printNow(String output) {
+		this.lastProgressPercentage = -1;	// The next progress report starts a new indication
+		this.updateMessage("");				// Erase previous progress indication before printing new text
+		Platform.runLater(() -> appendOutput(output));
+	}
+	
+	// Cheap enough to call once per block (the message is only rebuilt when the percentage changes)
+	public void reportProgress(long workDone, long totalWork) {
+		if (totalWork <= 0 || !PipelineExecutor.isLive()) return;
+		this.updateProgress(workDone, totalWork);
+		int progressPercentage = (int) Math.min(100, (workDone * 100) / totalWork);
+		if (progressPercentage != this.lastProgressPercentage) {
+			this.lastProgressPercentage = progressPercentage;
+			this.updateMessage("    " + progressPercentage + "%");
+		}
+	}
+	
+	// Progress with extra detail (e.g. throughput), which is rebuilt on every call (so it should only be polled)
+	public void reportProgress(long workDone, long totalWork, String detail) {
+		if (totalWork <= 0 || !PipelineExecutor.isLive()) return;
+		this.updateProgress(workDone, totalWork);
+		this.lastProgressPercentage = (int) Math.min(100, (workDone * 100) / totalWork);
+		this.updateMessage("    " + this.lastProgressPercentage + "%" + detail);
+	}
+	
+	// Runs on the FX application thread whenever the progress message changes
+	private void showProgress(String progressText) {
+		if (this.isCancelled()) return;
+		long currentTime = System.currentTimeMillis();
+		if (!progressText.isEmpty() && this.lastProgressOutputTime != -1 &&		// -1 = uninitialised
+			currentTime - this.lastProgressOutputTime <= Config.PROGRESS_REFRESH_VALUES[Config.PROGRESS_REFRESH_INDEX]) {
+			return;
+		}
+		eraseProgress();
+		if (!progressText.isEmpty()) {
+			this.outputProgressText = progressText;		// Update the variable that stores the last progress text
+			this.lastProgressOutputTime = currentTime;	// Update the time of the last progress text output
+			this.textOutput.appendText(progressText);
+		}
+	}
+	
+	private void appendOutput(String text) {
+		if (this.isCancelled()) return;
+		eraseProgress();
+		this.textOutput.appendText(text);	// appendText is needed to scroll to the bottom
+	}
+	
+	private void eraseProgress() {
+		if (!outputProgressText.isEmpty()) {
+			int deleteStart = this.textOutput.getLength() - outputProgressText.length();
+			int deleteEnd = this.textOutput.getLength();
+			this.textOutput.deleteText(deleteStart, deleteEnd);
+			this.outputProgressText = "";
 		}
 	}
 	
 	// Checked at the following times:
-	//   * The start of a loop iteration
+	//   * The start of a loop iteration (or block of samples)
 	//   * After a long-running helper function
 	//   * After closing an IO stream
 	//   * End of program execution
+	// This is a single volatile read, so worker threads can check it as often as needed
 	public boolean taskCancelled() {
-		if (this.isCancelled()) {
-			this.textOutput.setText("");
-			return true;
-		} else {
-			return false;
-		}
+		return this.cancelRequested;
+	}
+	
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		this.cancelRequested = true;	// Output is cleared by the GUI
+		return super.cancel(mayInterruptIfRunning);
 	}
 	
 	public String sanitisePathForWindows(String path) {
@@ -321,18 +530,20 @@ public class FileProcessingTask extends Task<Void> {
 		FileInputStream reader = new FileInputStream(input);
 		FileOutputStream writer = new FileOutputStream(output);
 		long dataToRead = splitMark;
+		byte[] buffer = BufferPool.SHARED.borrow((int) Math.min(dataToRead, Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX]));
 		try {
 			while (dataToRead > 0) {
 				if (taskCancelled()) return;
 				int bufferSize = (int) Math.min(dataToRead, Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX]);
-				byte[] buffer = new byte[bufferSize];
-				reader.read(buffer);
-				writer.write(buffer);
-				dataToRead -= bufferSize;
+				int bytesRead = reader.read(buffer, 0, bufferSize);
+				if (bytesRead < 0) break;
+				writer.write(buffer, 0, bytesRead);
+				dataToRead -= bytesRead;
 			}
 		} catch (Exception e) {
-			this.printOut(e.toString(), true, false);
+			this.printOut(e.toString(), true);
 		} finally {
+			BufferPool.SHARED.release(buffer);
 			reader.close();
 			writer.close();
 		}
@@ -375,7 +586,7 @@ public class FileProcessingTask extends Task<Void> {
 			reader.read(header);
 			convertRIFFtoRF64(header, newFileLength);
 		} catch (Exception e) {
-			this.printOut(e.toString(), true, false);
+			this.printOut(e.toString(), true);
 		} finally {
 			reader.close();
 			return header;
@@ -386,21 +597,23 @@ public class FileProcessingTask extends Task<Void> {
 								Type fileType) throws Exception {
 		FileInputStream reader = new FileInputStream(input);
 		FileOutputStream writer = new FileOutputStream(output);
+		long dataToRead = input.length() - splitMark;
+		byte[] buffer = BufferPool.SHARED.borrow((int) Math.max(0, Math.min(dataToRead, Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX])));
 		try {
 			writer.write(header);
 			reader.skip(splitMark);
-			long dataToRead = input.length() - splitMark;
 			while (dataToRead > 0) {
 				if (taskCancelled()) return;
 				int bufferSize = (int) Math.min(dataToRead, Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX]);
-				byte[] buffer = new byte[bufferSize];
-				reader.read(buffer);
-				writer.write(buffer);
-				dataToRead -= bufferSize;
+				int bytesRead = reader.read(buffer, 0, bufferSize);
+				if (bytesRead < 0) break;
+				writer.write(buffer, 0, bytesRead);
+				dataToRead -= bytesRead;
 			}
 		} catch (Exception e) {
-			this.printOut(e.toString(), true, false);
+			this.printOut(e.toString(), true);
 		} finally {
+			BufferPool.SHARED.release(buffer);
 			reader.close();
 			writer.close();
 		}
@@ -412,7 +625,7 @@ public class FileProcessingTask extends Task<Void> {
 			reader.skip(splitMark);
 			AudioSystem.write(reader, fileType, output);
 		} catch (Exception e) {
-			this.printOut(e.toString(), true, false);
+			this.printOut(e.toString(), true);
 		} finally {
 			reader.close();
 		}
@@ -470,7 +683,7 @@ public class FileProcessingTask extends Task<Void> {
 				} else {
 					readEnd(temp, end, splitMark, fileType);
 				}
-				this.printOut("Saving file: " + outputFileName, true, false);
+				this.printOut("Saving file: " + outputFileName, true);
 				temp.delete();
 				if (s > 0) {
 					temp = new File(path, "TEMP." + fileExt);
@@ -480,7 +693,7 @@ public class FileProcessingTask extends Task<Void> {
 				start.delete();
 			}
 		} catch (Exception e) {
-			this.printOut(e.toString(), true, false);
+			this.printOut(e.toString(), true);
 		} finally {
 			for (File tempFile : tempFiles) {	// Safety precaution (temp files should be deleted procedurally)
 				tempFile.delete();
@@ -491,146 +704,38 @@ public class FileProcessingTask extends Task<Void> {
 		}
 	}
 	
-	// Convert raw data bytes to integer values
-	public int convertBytesToInts(byte[] buffer, int[] data, int dataPointer, int sampleSize,
-								  int channels, int frameSize, boolean bigEndian, boolean starting,
-								  boolean ending, long progressTotal, long progressBaseline) {
-		boolean usePrintProgress = progressBaseline != -1 && progressTotal != -1; 
-		int channelSize = sampleSize / 8;
-		int start = 0;										// Remove leading and trailing silence
-		int end = buffer.length - frameSize;
-		boolean silence = true;
-		if (starting) {
-			for (int f = start; f < end; f += frameSize) {	// Define start point after leading silence
-				if (taskCancelled()) return 0;
-				for (int b = 0; b < frameSize; b++) {
-					if (buffer[f + b] != 0) {
-						start = f;
-						silence = false;
-						break;
-					}
-				}
-				if (!silence) { break; }
-			}
-		}
-		if (ending) {
-			silence = true;
-			for (int f = end; f > start; f -= frameSize) {	// Define end point before trailing silence
-				if (taskCancelled()) return 0;
-				for (int b = 0; b < frameSize; b++) {
-					if (buffer[f + b] != 0) {
-						end = f;
-						silence = false;
-						break;
-					}
-				}
-				if (!silence) { break; }
-			}
-		}
-		for (int f = start; f < end; f += frameSize) {		// Parse frames
-			if (taskCancelled()) return 0;
-			if (usePrintProgress) {
-				long progressPercentage = (long) ((((double) progressBaseline + f) / (double) progressTotal) * 100);
-				this.printOut("    " + progressPercentage + "%", false, true);
-			}
-			int[] frame = new int[channels];
-			for (int c = 0; c < channels; c++) {			// Parse channels
-				for (int b = 0; b < channelSize; b++) {		// Parse bytes
-					byte currentByte = buffer[f + (c * channelSize) + b];
-					if (bigEndian) {						// "<< 24 >>> 24" prevents sign-extension
-						if (b < channelSize - 1) {
-							frame[c] |= (currentByte << 24 >>> 24 << ((channelSize - 1 - b) * 8));
-						} else {
-							frame[c] |= (currentByte << ((channelSize - 1 - b) * 8));
-						}
-					} else {
-						if (b < channelSize - 1) {
-							frame[c] |= (currentByte << 24 >>> 24 << (b * 8));
-						} else {
-							frame[c] |= (currentByte << (b * 8));
-						}
-					}
-				}
-			}
-			data[dataPointer] = average(frame);	// Generate mono signal by averaging all channels
-			dataPointer++;
-		}
-		return dataPointer;
-	}
-	
 	public AudioData getAudioData(File file) throws Exception {
-		AudioInputStream audioStream = AudioSystem.getAudioInputStream(file);
-		AudioFormat metaData = audioStream.getFormat();
-		int[] data = {};
+		AudioFileReader reader = AudioFileReader.open(file);	// Memory-mapped where the format allows it
+		AudioFormat metaData = reader.metaData;
+		SampleStore data = new SampleStore(0);
 		try {
-			int channels = metaData.getChannels();
-			int frameSize = metaData.getFrameSize();
-			int sampleSize = metaData.getSampleSizeInBits();
-			boolean bigEndian = metaData.isBigEndian();
-			long bufferRemaining = file.length();
-			boolean starting = true;	// Prevents leading space from being removed in non-starting buffer chunks
-			boolean ending = false;		// Prevents trailing space from being removed in non-ending buffer chunks
-			long progressTotal = file.length();
-			long progressBaseline = 0;
-			int audioDataLength = (int) Math.ceil((double) file.length() / (double) frameSize);
-			data = new int[audioDataLength];
-			int dataPointer = 0;
-			while (bufferRemaining >= 0) {
-				if (bufferRemaining <= Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX]) {
-					ending = true;
-				}
-				int bufferSize = (int) Math.min(bufferRemaining, Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX]);
-				byte[] buffer = new byte[bufferSize];
-				audioStream.read(buffer);
-				dataPointer = convertBytesToInts(buffer, data, dataPointer, sampleSize, channels, frameSize, bigEndian,
-								   starting, ending, progressTotal, progressBaseline);
-				progressBaseline += bufferSize;
-				bufferRemaining -= Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX];
-				starting = false;
+			data = new SampleStore(reader.frameCount);	// Segments are allocated as they are filled (frame count is only an upper bound when streaming)
+			if (data.isFileBacked()) {
+				this.printOut("    Decoded audio will be stored in a temporary file", true);
+			}
+			while (data.length() < reader.frameCount) {		// Parse frames (one block at a time)
+				if (taskCancelled()) break;
+				this.reportProgress(data.length(), reader.frameCount);
+				if (data.append(reader, Config.DECODE_BLOCK_FRAMES) < 0) break;
 			}
 		} catch (Exception e) {
-			this.printOut(e.toString(), true, false);
+			this.printOut(e.toString(), true);
 		} finally {
-			audioStream.close();
+			reader.close();
 			return new AudioData(data, metaData);
 		}
 	}
 	
-	public int getLoopLength(int[] data, int frameRate, int minLoop, int maxLoop, boolean autoLengthDetection) throws Exception {
-		int loopLength = -1;
-		float loopVariance = -1.0f;
-		int autoTimeLimit = -1;		// Not required if autoLengthDetection == false
-		if (autoLengthDetection) {
-			autoTimeLimit = frameRate * Config.SCAN_WINDOW_VALUES[Config.AUTO_SCAN_WINDOW_INDEX];
-			minLoop = frameRate;
-			maxLoop = data.length / 4;
-		} else {
-			minLoop = Math.max(1, minLoop) * frameRate;
-			maxLoop = Math.min(data.length / 4, maxLoop * frameRate);
+	public int getLoopLength(SampleStore data, int frameRate, int minLoop, int maxLoop, boolean autoLengthDetection) throws Exception {
+		LoopLengthEngine engine = new LoopLengthEngine(this);
+		if (autoLengthDetection) {	// Autocorrelation (O(N log N)) replaces the exhaustive search
+			return engine.getAutomaticLoopLength(data, frameRate);
 		}
-		for (int length = minLoop; length < maxLoop; length++) {
-			if (taskCancelled()) return 0;
-			long progressPercentage = (long) (((double) (length - minLoop) / (double) (maxLoop - minLoop)) * 100);
-			this.printOut("    " + progressPercentage + "%", false, true);
-			int[] list1 = Arrays.copyOfRange(data, 0, length);
-			int[] list2 = Arrays.copyOfRange(data, length, length * 2);
-			float varianceSum = 0.0f;
-			int optimisationFactor = Config.OPTIMISATION_VALUES[Config.OPTIMISATION_INDEX];
-			int frameIncrement = Math.max(1, (list1.length / frameRate) * optimisationFactor);
-			for (int i = 0; i < list1.length; i += frameIncrement) {
-				if (taskCancelled()) return 0;
-				int value1 = list1[i] == 0 ? list1[i] + 1 : list1[i]; // Guard against zero-division below
-				int value2 = list1[i] == 0 ? list2[i] + 1 : list2[i]; // "list1[i] == 0" is not a typo
-				varianceSum += Math.abs((value2 - value1) / value1);
-			}
-			float variance = varianceSum / list1.length;
-			if (variance < loopVariance || loopLength == -1) {
-				loopLength = length;
-				loopVariance = variance;
-			}
-			if (autoLengthDetection && (length - loopLength) > autoTimeLimit) {
-				break;	// If enough audio has been scanned since the lowest variance value detected so far, use that length
-			}
+		minLoop = Math.max(1, minLoop) * frameRate;
+		maxLoop = Math.min(engine.getDetectionLength(data) / 4, maxLoop * frameRate);
+		int loopLength = engine.getLoopLength(data, frameRate, minLoop, maxLoop);	// Candidates are scored in parallel
+		if (Config.SHOW_DIAGNOSTICS && engine.candidatesScored > 0 && engine.allocatedBytes != -1) {
+			this.printOut("    Memory allocated per candidate: " + (engine.allocatedBytes / engine.candidatesScored) + " bytes", true);
 		}
 		return loopLength;
 	}
@@ -657,34 +762,8 @@ public class FileProcessingTask extends Task<Void> {
 		}
 	}
 	
-	public double[] getLoopVariances(int loopLength, int[] audioData, int sampleRate) throws Exception {
-		int windowSize = sampleRate * Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX];
-		int start = windowSize + loopLength;
-		int end = audioData.length - windowSize;
-		int variancesLength = (int) Math.ceil((double) (end - start) / (double) windowSize);
-		double[] variances = new double[variancesLength];
-		int variancesIndex = 0;
-		for (int frame = start; frame <= end; frame += windowSize) {
-			if (taskCancelled()) return variances;
-			long progressPercentage = (long) (((double) (frame - start) / (double) (end - start)) * 100);
-			this.printOut("    " + progressPercentage + "%", false, true);
-			double varianceSum = 0.0;
-			for (int i = frame; i < frame + windowSize; i++) {
-				if (taskCancelled()) return variances;
-				int prevValue = audioData[i];
-				int currValue = audioData[i - loopLength];
-				if (prevValue == 0) {	// Safeguard against zero-division below
-					prevValue += 1; 
-					currValue += 1;
-				}
-				varianceSum += Math.abs((double) (currValue - prevValue) / prevValue);
-			}
-			double variance = varianceSum / windowSize;
-			String varianceScale = Config.VARIANCE_SCALE_VALUES[Config.VARIANCE_SCALE_INDEX];
-			variances[variancesIndex] = getScaledValue(variance, varianceScale);
-			variancesIndex++;
-		}
-		return variances;
+	public double[] getLoopVariances(int loopLength, SampleStore audioData, int sampleRate) throws Exception {
+		return new LoopVarianceEngine(this).getLoopVariances(loopLength, audioData, sampleRate);	// Windows are calculated in parallel
 	}
 	
 	// Assumes all numerical data values are positive
@@ -727,87 +806,18 @@ public class FileProcessingTask extends Task<Void> {
 		}
 	}
 	
-	// Sudden amplitude jumps indicate sinusoidal waveform disruption, and therefore potential frame loss.
-	public double[] getSignalGradientData(int[] audioData, int sampleRate, int bitDepth) throws Exception {
-		long maxValue = Math.round(Math.pow(2, bitDepth));
-		int windowSize = sampleRate * Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX];
-		double maxGradient = 0.0;
-		int start = 1;
-		int end = audioData.length;
-		int probabilitiesLength = (int) Math.ceil((double) (end - start) / (double) windowSize);
-		double[] probabilities = new double[probabilitiesLength];
-		int probabilitiesPointer = 0;
-		for (int frame = start; frame < end; frame++) {
-			if (taskCancelled()) return probabilities;
-			long progressPercentage = (long) (((double) frame / (double) end) * 100);
-			this.printOut("    " + progressPercentage + "%", false, true);
-			if (frame % windowSize == 0) {
-				String probabilityScale = Config.PROBABILITY_SCALE_VALUES[Config.PROBABILITY_SCALE_INDEX];
-				probabilities[probabilitiesPointer] = getScaledValue(maxGradient, probabilityScale);
-				probabilitiesPointer++;
-				maxGradient = 0.0;
-			}
-			int prevValue = audioData[frame - 1];
-			int currValue = audioData[frame];
-			double currGradient = Math.abs((double) (currValue - prevValue) / maxValue);
-			maxGradient = Math.max(maxGradient, currGradient);
-		}
-		return probabilities;
-	}
-	
-	// A large/sudden change to zero amplitude indicates potential frame loss
-	public double[] getSignalCutoutData(int[] audioData, int sampleRate, int bitDepth) throws Exception {
-		long maxValue = Math.round(Math.pow(2, bitDepth));
-		int windowSize = sampleRate * Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX];
-		double maxCutout = 0.0;
-		int start = 1;
-		int end = audioData.length;
-		int probabilitiesLength = (int) Math.ceil((double) (end - start) / (double) windowSize);
-		double[] probabilities = new double[probabilitiesLength];
-		int probabilitiesPointer = 0;
-		for (int frame = start; frame < end; frame++) {
-			if (taskCancelled()) return probabilities;
-			long progressPercentage = (long) (((double) frame / (double) end) * 100);
-			this.printOut("    " + progressPercentage + "%", false, true);
-			if (frame % windowSize == 0) {
-				String probabilityScale = Config.PROBABILITY_SCALE_VALUES[Config.PROBABILITY_SCALE_INDEX];
-				probabilities[probabilitiesPointer] = getScaledValue(maxCutout, probabilityScale);
-				probabilitiesPointer++;
-				maxCutout = 0.0;
-			}
-			int currValue = audioData[frame];
-			int prevValue = audioData[frame - 1];
-			if (currValue == 0) {
-				double currCutout = Math.abs((double) prevValue / (double) maxValue);
-				maxCutout = Math.max(maxCutout, currCutout);
-			}
-		}
-		return probabilities;
-	}
-	
 	// Single dataset
 	public void drawAnalyticsOne(int sampleRate, double[] yData, String fileName, File outputLocation,
 								 String tool, String prefix) throws Exception {
 		try {
-			TimeSeries series1 = new TimeSeries("Raw Data");
-			TimeSeries series2 = new TimeSeries("10-Point Average");
-			TimeSeries series3 = new TimeSeries("20-Point Average");
-			Second current = new Second(0, 0, 0, 1, 1, 2000);
-			int timeScale = Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX];	// Measured in seconds
-			int end = yData.length;
-			for (int v = 0; v < end; v++) {
-				if (taskCancelled()) return;
-				long progressPercentage = (long) Math.floor(((double) v / (double) end) * 100);
-				this.printOut("    " + progressPercentage + "%", false, true);
-				for (int s = 0; s < timeScale; s++) { current = (Second) current.next(); }
-				series1.add(current, yData[v]);
-				series2.add(current, average(Arrays.copyOfRange(yData, Math.max(v - 9, 0), v + 1)));
-				series3.add(current, average(Arrays.copyOfRange(yData, Math.max(v - 19, 0), v + 1)));
-			}
-			TimeSeriesCollection dataset = new TimeSeriesCollection();
-			dataset.addSeries(series3);	// Series are layered in descending order (i.e. first = top)
-			dataset.addSeries(series2);
-			dataset.addSeries(series1);
+			double[][] averages = SmoothingEngine.getMovingAverages(yData, Config.SMOOTHING_WINDOWS);
+			if (taskCancelled()) return;
+			long start = new Second(0, 0, 0, 1, 1, 2000).getFirstMillisecond();
+			long interval = Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX] * 1000L;	// Measured in milliseconds
+			DefaultXYDataset dataset = new DefaultXYDataset();	// Primitive x/y arrays (x = milliseconds)
+			XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
+			addSeriesGroup(dataset, renderer, "", yData, averages, start, interval, new Color[] {
+				new Color(0xff, 0x00, 0x00), new Color(0x00, 0x00, 0xff), new Color(0x00, 0x00, 0x00)});
 			String yLabel;
 			String outputPrefix;
 			if (tool.equals(Config.LOOP_SCAN)) {
@@ -828,13 +838,6 @@ public class FileProcessingTask extends Task<Void> {
 				false, false, false					// Legend, tooltips, URLs
 			);
 			chart.setPadding(new RectangleInsets(20, 20, 20, 20));
-			XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
-			renderer.setSeriesPaint(0, new Color(0x00, 0x00, 0x00));
-			renderer.setSeriesPaint(1, new Color(0x00, 0x00, 0xff));
-			renderer.setSeriesPaint(2, new Color(0xff, 0x00, 0x00));
-			renderer.setSeriesShapesVisible(0, false);
-			renderer.setSeriesShapesVisible(1, false);
-			renderer.setSeriesShapesVisible(2, false);
 			XYPlot plot = (XYPlot)chart.getPlot();
 			plot.setRenderer(0, renderer);
 			if (taskCancelled()) return;
@@ -862,43 +865,20 @@ public class FileProcessingTask extends Task<Void> {
 	public void drawAnalyticsTwo(int sampleRate, double[] yData1, double[] yData2, String fileName,
 								 File outputLocation, String tool, String prefix) throws Exception {
 		try {
-			TimeSeries series1 = new TimeSeries("Raw Data 1");
-			TimeSeries series2 = new TimeSeries("10-Point Average 1");
-			TimeSeries series3 = new TimeSeries("20-Point Average 1");
-			TimeSeries series4 = new TimeSeries("Raw Data 2");
-			TimeSeries series5 = new TimeSeries("10-Point Average 2");
-			TimeSeries series6 = new TimeSeries("20-Point Average 2");
-			Second current = new Second(0, 0, 0, 1, 1, 2000);
-			int timeScale = Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX];	// Measured in seconds
-			int end = yData1.length;
-			for (int v = 0; v < end; v++) {
-				if (taskCancelled()) return;
-				long progressPercentage = (long) Math.floor(((double) v / (double) end) * 100);
-				this.printOut("    " + progressPercentage + "%", false, true);
-				for (int s = 0; s < timeScale; s++) { current = (Second) current.next(); }
-				if (average(yData2) > average(yData1)) {	// Dataset with higher average is layered on top
-					series1.add(current, yData1[v]);
-					series2.add(current, average(Arrays.copyOfRange(yData1, Math.max(v - 9, 0), v + 1)));
-					series3.add(current, average(Arrays.copyOfRange(yData1, Math.max(v - 19, 0), v + 1)));
-					series4.add(current, yData2[v]);
-					series5.add(current, average(Arrays.copyOfRange(yData2, Math.max(v - 9, 0), v + 1)));
-					series6.add(current, average(Arrays.copyOfRange(yData2, Math.max(v - 19, 0), v + 1)));
-				} else {
-					series1.add(current, yData2[v]);
-					series2.add(current, average(Arrays.copyOfRange(yData2, Math.max(v - 9, 0), v + 1)));
-					series3.add(current, average(Arrays.copyOfRange(yData2, Math.max(v - 19, 0), v + 1)));
-					series4.add(current, yData1[v]);
-					series5.add(current, average(Arrays.copyOfRange(yData1, Math.max(v - 9, 0), v + 1)));
-					series6.add(current, average(Arrays.copyOfRange(yData1, Math.max(v - 19, 0), v + 1)));
-				}
-			}
-			TimeSeriesCollection dataset = new TimeSeriesCollection();
-			dataset.addSeries(series6);	// Series are layered in descending order (i.e. first = top)
-			dataset.addSeries(series5);
-			dataset.addSeries(series4);
-			dataset.addSeries(series3);
-			dataset.addSeries(series2);
-			dataset.addSeries(series1);
+			boolean secondOnTop = average(yData2) > average(yData1);	// Dataset with higher average is layered on top
+			double[] bottomData = secondOnTop ? yData1 : yData2;
+			double[] topData = secondOnTop ? yData2 : yData1;
+			double[][] bottomAverages = SmoothingEngine.getMovingAverages(bottomData, Config.SMOOTHING_WINDOWS);
+			double[][] topAverages = SmoothingEngine.getMovingAverages(topData, Config.SMOOTHING_WINDOWS);
+			if (taskCancelled()) return;
+			long start = new Second(0, 0, 0, 1, 1, 2000).getFirstMillisecond();
+			long interval = Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX] * 1000L;	// Measured in milliseconds
+			DefaultXYDataset dataset = new DefaultXYDataset();	// Primitive x/y arrays (x = milliseconds)
+			XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
+			addSeriesGroup(dataset, renderer, " 2", topData, topAverages, start, interval, new Color[] {
+				new Color(0x00, 0x7f, 0x7f), new Color(0xff, 0x3f, 0xff), new Color(0xff, 0xff, 0x00)});
+			addSeriesGroup(dataset, renderer, " 1", bottomData, bottomAverages, start, interval, new Color[] {
+				new Color(0xff, 0x00, 0x00), new Color(0x00, 0x00, 0xff), new Color(0x00, 0x00, 0x00)});
 			String yLabel;
 			String outputPrefix;
 			if (tool.equals(Config.LOOP_SCAN)) {
@@ -919,19 +899,6 @@ public class FileProcessingTask extends Task<Void> {
 				false, false, false					// Legend, tooltips, URLs
 			);
 			chart.setPadding(new RectangleInsets(20, 20, 20, 20));
-			XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
-			renderer.setSeriesPaint(3, new Color(0x00, 0x00, 0x00));
-			renderer.setSeriesPaint(4, new Color(0x00, 0x00, 0xff));
-			renderer.setSeriesPaint(5, new Color(0xff, 0x00, 0x00));
-			renderer.setSeriesPaint(0, new Color(0xff, 0xff, 0x00));
-			renderer.setSeriesPaint(1, new Color(0xff, 0x3f, 0xff));
-			renderer.setSeriesPaint(2, new Color(0x00, 0x7f, 0x7f));
-			renderer.setSeriesShapesVisible(0, false);
-			renderer.setSeriesShapesVisible(1, false);
-			renderer.setSeriesShapesVisible(2, false);
-			renderer.setSeriesShapesVisible(3, false);
-			renderer.setSeriesShapesVisible(4, false);
-			renderer.setSeriesShapesVisible(5, false);
 			XYPlot plot = (XYPlot)chart.getPlot();
 			plot.setRenderer(0, renderer);
 			if (taskCancelled()) return;
@@ -955,47 +922,44 @@ public class FileProcessingTask extends Task<Void> {
 		}
 	}
 	
-	public double[] getWaveformData(int[] audioData, int bitDepth) {	// {Peak, RMS} (dBFS)
-		double limit = 0.0;
-		double peak = 0.0;
-		double rms = 0.0;
-		for (int value : audioData) {
-			if (taskCancelled()) return null;
-			limit = value >= 0 ? Math.pow(2, bitDepth - 1) - 1 : Math.pow(2, bitDepth - 1) * -1;
-			peak = Math.max(peak, Math.abs(value / limit));
-			rms += Math.pow(value / limit, 2);
+	// Returns the points chosen by DecimationEngine as {x, y} arrays (values[v] is plotted (v + 1) intervals after 'start')
+	public double[][] getSeriesPoints(double[] values, long start, long interval) {
+		int columns = Config.RESOLUTION_VALUES[Config.OUTPUT_RESOLUTION_INDEX][0];
+		int[] indices = DecimationEngine.getPointIndices(values, columns);
+		double[][] points = new double[2][indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			points[0][i] = start + ((indices[i] + 1) * interval);
+			points[1][i] = values[indices[i]];
 		}
-		peak = 20.0 * Math.log10(peak);
-		rms = 20.0 * Math.log10(Math.sqrt(rms / audioData.length));
-		return new double[] {peak, rms};
+		return points;
 	}
 	
-	public void drawWaveform(AudioFormat metaData, int[] audioData, String fileName,
+	// Series are layered in descending order (i.e. first = top), so the averages (longest window first) are added
+	// above the raw data. colours = {raw data, first average, second average, ...}; extra averages use default colours.
+	public void addSeriesGroup(DefaultXYDataset dataset, XYLineAndShapeRenderer renderer, String suffix, double[] rawData,
+							   double[][] averages, long start, long interval, Color[] colours) {
+		int offset = dataset.getSeriesCount();
+		for (int w = averages.length - 1; w >= 0; w--) {
+			dataset.addSeries(Config.SMOOTHING_WINDOWS[w] + "-Point Average" + suffix, getSeriesPoints(averages[w], start, interval));
+		}
+		dataset.addSeries("Raw Data" + suffix, getSeriesPoints(rawData, start, interval));
+		for (int s = 0; s <= averages.length; s++) {
+			int colour = averages.length - s;
+			if (colour < colours.length) {
+				renderer.setSeriesPaint(offset + s, colours[colour]);
+			}
+			renderer.setSeriesShapesVisible(offset + s, false);
+		}
+	}
+	
+	public void drawWaveform(double[] peaks, double[] rmsValues, String fileName,	// Window series (dBFS)
 							 File outputLocation, float waveformWindow, String outputPrefix) {
 		try {
-			int sampleRate = Math.round(metaData.getSampleRate());
-			int bitDepth = metaData.getSampleSizeInBits();
-			TimeSeries series1 = new TimeSeries("Peak");
-			TimeSeries series2 = new TimeSeries("RMS");
-			int timeInterval = Math.round(waveformWindow * 1000.0f);		// Measured in seconds
-			int frameInterval = Math.round(waveformWindow * sampleRate);	// Measured in frames
-			Millisecond current = new Millisecond(0, 0, 0, 0, 1, 1, 2000);
-			int end = audioData.length - frameInterval;
-			for (int v = 0; v <= end; v += frameInterval) {
-				if (taskCancelled()) return;
-				long progressPercentage = (long) (((double) v / (double) end) * 100);
-				this.printOut("    " + progressPercentage + "%", false, true);
-				for (int s = 0; s < timeInterval; s++) {
-					if (taskCancelled()) return;
-					current = (Millisecond)current.next();
-				}
-				double[] waveformData = getWaveformData(Arrays.copyOfRange(audioData, v, v + frameInterval), bitDepth);
-				series1.add(current, waveformData[0]);
-				series2.add(current, waveformData[1]);
-			}
-			TimeSeriesCollection dataset = new TimeSeriesCollection();
-			dataset.addSeries(series1);	// Series are layered in descending order (i.e. first = top)
-			dataset.addSeries(series2);
+			int timeInterval = Math.round(waveformWindow * 1000.0f);		// Measured in milliseconds
+			long start = new Millisecond(0, 0, 0, 0, 1, 1, 2000).getFirstMillisecond();
+			DefaultXYDataset dataset = new DefaultXYDataset();	// Primitive x/y arrays (x = milliseconds)
+			dataset.addSeries("Peak", getSeriesPoints(peaks, start, timeInterval));	// Series are layered in descending order (i.e. first = top)
+			dataset.addSeries("RMS", getSeriesPoints(rmsValues, start, timeInterval));
 			JFreeChart chart = ChartFactory.createTimeSeriesChart(
 				"Audiscope Output\n" + fileName,	// Chart title
 				"Time",								// X-axis label
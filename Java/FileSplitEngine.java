@@ -0,0 +1,156 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Splits a WAV file into parts by copying frame-aligned byte ranges of the data chunk directly into each part.
+// Each part gets a copy of the original header (with its sizes updated), and the audio is copied with
+// FileChannel.transferTo (so each byte is read once and written once, without passing through the Java heap).
+// RF64/BW64 parts that are small enough for a RIFF header are saved as RIFF files (the 'ds64' chunk becomes 'JUNK').
+// Parts don't depend on each other, so up to IO_CONCURRENCY_VALUES parts are written at once (positional reads
+// from a shared FileChannel are thread-safe, and each part has its own output channel).
+public class FileSplitEngine {
+	private FileProcessingTask task;
+
+	public FileSplitEngine(FileProcessingTask task) {
+		this.task = task;
+	}
+
+	// Returns false if the file isn't a RIFF/RF64 WAV file (nothing is written in that case)
+	public boolean split(File file, AudioFileReader.DataChunk chunk, File outputPath, float splitLimit) throws Exception {
+		String magic = (chunk.header.length < 12) ? "" : new String(chunk.header, 0, 4, StandardCharsets.US_ASCII);
+		if (!magic.equals("RIFF") && !isLargeWav(chunk.header)) {
+			return false;
+		}
+		long outputFileSizeLimit = (long) (splitLimit * 1000000000.0);	// Includes the header (and pad byte)
+		long partFrames = Math.max(1, (outputFileSizeLimit - chunk.header.length - 1) / chunk.frameSize);
+		long partLength = partFrames * chunk.frameSize;
+		int partCount = (int) Math.max(1, (chunk.length + partLength - 1) / partLength);
+		int fileCountMagnitude = (int) Math.ceil(Math.log10(partCount + 1));
+		String fileName = file.getName();
+		String fileNameWithoutExt = fileName.substring(0, fileName.lastIndexOf("."));
+		String fileExt = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
+		String[] outputFileNames = new String[partCount];
+		long[] partLengths = new long[partCount];
+		AtomicLong[] partProgress = new AtomicLong[partCount];	// Bytes of audio written to each part
+		int concurrency = Math.min(Config.IO_CONCURRENCY_VALUES[Config.IO_CONCURRENCY_INDEX], partCount);
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		ArrayList<Future<Void>> parts = new ArrayList<Future<Void>>();
+		FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			for (int p = 0; p < partCount; p++) {
+				long start = p * partLength;
+				File part = new File(outputPath, fileNameWithoutExt + " (" + String.format("%0" + fileCountMagnitude + "d", p + 1) + ")." + fileExt);
+				outputFileNames[p] = part.getName();
+				partLengths[p] = Math.min(partLength, chunk.length - start);
+				partProgress[p] = new AtomicLong();
+				AtomicLong progress = partProgress[p];
+				long length = partLengths[p];
+				parts.add(executor.submit(() -> writePart(input, chunk, start, length, part, progress)));
+			}
+			executor.shutdown();
+			boolean[] saved = new boolean[partCount];
+			long startTime = System.nanoTime();
+			boolean finished = false;
+			while (!finished) {		// Progress is printed from this thread only
+				finished = executor.awaitTermination(Config.LOOP_SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				long written = 0;
+				StringBuilder activeParts = new StringBuilder();
+				for (int p = 0; p < partCount; p++) {
+					long partWritten = partProgress[p].get();
+					written += partWritten;
+					if (!saved[p] && parts.get(p).isDone()) {
+						saved[p] = true;
+						if (partWritten == partLengths[p] && !task.taskCancelled()) {
+							task.printOut("Saving file: " + outputFileNames[p], true);
+						}
+					} else if (!saved[p] && partWritten > 0) {
+						activeParts.append(" | Part " + (p + 1) + ": " + ((partWritten * 100) / partLengths[p]) + "%");
+					}
+				}
+				double seconds = Math.max((System.nanoTime() - startTime) / 1000000000.0, 0.001);
+				String throughput = String.format(" (%.1f MB/s)", (written / 1000000.0) / seconds);
+				task.reportProgress(written, chunk.length, throughput + activeParts);
+			}
+			for (Future<Void> part : parts) {
+				try {
+					part.get();
+				} catch (ExecutionException e) {
+					throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			input.close();
+		}
+		return true;
+	}
+
+	private Void writePart(FileChannel input, AudioFileReader.DataChunk chunk, long start, long length, File part,
+						   AtomicLong progress) throws Exception {
+		if (task.taskCancelled()) return null;
+		long transferSize = Config.BUFFER_VALUES[Config.BUFFER_SIZE_INDEX];
+		FileChannel output = FileChannel.open(part.toPath(), StandardOpenOption.CREATE,
+											  StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		boolean complete = false;
+		try {
+			output.write(ByteBuffer.wrap(getPartHeader(chunk, length)));
+			long position = chunk.offset + start;
+			long end = position + length;
+			while (position < end) {
+				if (task.taskCancelled()) break;
+				long transferred = input.transferTo(position, Math.min(end - position, transferSize), output);
+				if (transferred <= 0) throw new EOFException("Unexpected end of audio data: " + part.getName());
+				position += transferred;
+				progress.addAndGet(transferred);
+			}
+			if ((length & 1) != 0) {
+				output.write(ByteBuffer.wrap(new byte[1]));		// Chunks are word-aligned
+			}
+			complete = (position == end);
+		} finally {
+			output.close();
+			if (!complete) part.delete();	// Cancelled or failed (incomplete parts aren't kept)
+		}
+		return null;
+	}
+
+	// Copy of the original header with the RIFF and data chunk sizes set for a part (capped at 4GB, like an
+	// unfinalised recording, if the part is too large for a RIFF header)
+	private byte[] getPartHeader(AudioFileReader.DataChunk chunk, long dataLength) {
+		byte[] header = chunk.header;
+		ByteBuffer partHeader = ByteBuffer.wrap(header.clone()).order(ByteOrder.LITTLE_ENDIAN);
+		long riffSize = (header.length - 8) + dataLength + (dataLength & 1);
+		if (isLargeWav(header) && riffSize > 0xffffffffL) {		// The sizes are stored in the 'ds64' chunk
+			partHeader.putLong(20, riffSize);
+			partHeader.putLong(28, dataLength);
+			partHeader.putLong(36, dataLength / chunk.frameSize);
+			return partHeader.array();
+		}
+		if (isLargeWav(header)) {
+			partHeader.put(0, "RIFF".getBytes(StandardCharsets.US_ASCII));
+			partHeader.put(12, "JUNK".getBytes(StandardCharsets.US_ASCII));
+		}
+		partHeader.putInt(4, (int) Math.min(riffSize, 0xffffffffL));
+		partHeader.putInt(header.length - 4, (int) Math.min(dataLength, 0xffffffffL));
+		return partHeader.array();
+	}
+
+	// RF64/BW64 header (with a 'ds64' chunk straight after the 'WAVE' ID, as the specification requires)
+	private static boolean isLargeWav(byte[] header) {
+		if (header.length < 48) return false;
+		String magic = new String(header, 0, 4, StandardCharsets.US_ASCII);
+		return (magic.equals("RF64") || magic.equals("BW64")) && new String(header, 12, 4, StandardCharsets.US_ASCII).equals("ds64");
+	}
+}
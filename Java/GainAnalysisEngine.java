@@ -0,0 +1,75 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.util.*;
+
+// Calculates the file peak/RMS and the peak/RMS of each waveform window in a single pass over an audio stream.
+// Only one decoded block is held at a time, so memory use doesn't depend on the file size (the window series hold
+// two values per window, e.g. 1.4MB for a 24-hour recording with 0.1 second windows).
+public class GainAnalysisEngine {
+	public double peak;				// dBFS
+	public double rms;				// dBFS
+	public double[] windowPeaks;	// dBFS (complete windows only)
+	public double[] windowRms;		// dBFS (complete windows only)
+	private FileProcessingTask task;
+
+	public GainAnalysisEngine(FileProcessingTask task) {
+		this.task = task;
+	}
+
+	public void analyse(AudioFileReader reader, float waveformWindow) throws Exception {
+		int bitDepth = reader.metaData.getSampleSizeInBits();
+		int windowSize = Math.max(1, Math.round(waveformWindow * reader.metaData.getSampleRate()));	// Measured in frames
+		long end = reader.frameCount;
+		int windowsLength = (int) Math.min(end / windowSize, Integer.MAX_VALUE - 8);
+		windowPeaks = new double[windowsLength];
+		windowRms = new double[windowsLength];
+		int windowsPointer = 0;
+		double filePeak = 0.0;
+		double fileSumOfSquares = 0.0;
+		long fileFrames = 0;
+		double windowPeak = 0.0;
+		double windowSumOfSquares = 0.0;
+		int windowFrames = 0;
+		int[] block = new int[Config.DECODE_BLOCK_FRAMES];
+		int framesRead;
+		while ((framesRead = reader.read(block, 0, block.length)) > 0) {
+			if (task.taskCancelled()) return;
+			task.reportProgress(fileFrames, end);
+			int from = 0;
+			while (from < framesRead) {
+				int to = Math.min(framesRead, from + (windowSize - windowFrames));
+				double[] sums = ScanKernels.getWaveformSums(block, from, to, bitDepth);	// {Peak, sum of squares}
+				windowPeak = Math.max(windowPeak, sums[0]);
+				windowSumOfSquares += sums[1];
+				windowFrames += to - from;
+				from = to;
+				if (windowFrames == windowSize) {	// Window is complete
+					if (windowsPointer < windowsLength) {
+						windowPeaks[windowsPointer] = 20.0 * Math.log10(windowPeak);
+						windowRms[windowsPointer] = 20.0 * Math.log10(Math.sqrt(windowSumOfSquares / windowSize));
+						windowsPointer++;
+					}
+					filePeak = Math.max(filePeak, windowPeak);
+					fileSumOfSquares += windowSumOfSquares;
+					windowPeak = 0.0;
+					windowSumOfSquares = 0.0;
+					windowFrames = 0;
+				}
+			}
+			fileFrames += framesRead;
+		}
+		filePeak = Math.max(filePeak, windowPeak);	// Partial final window (only included in the file values)
+		fileSumOfSquares += windowSumOfSquares;
+		peak = 20.0 * Math.log10(filePeak);
+		rms = 20.0 * Math.log10(Math.sqrt(fileSumOfSquares / fileFrames));
+		if (windowsPointer < windowsLength) {	// Frame count is only an upper bound when streaming
+			windowPeaks = Arrays.copyOf(windowPeaks, windowsPointer);
+			windowRms = Arrays.copyOf(windowRms, windowsPointer);
+		}
+	}
+}
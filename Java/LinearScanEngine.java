@@ -0,0 +1,93 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.util.*;
+
+// Runs any number of linear scan detectors over an audio stream in a single pass.
+// Each decoded block is small enough to stay in the CPU cache while every detector scans it, so adding a detector
+// doesn't add another pass over the audio data. Window boundaries split blocks into segments (i.e. no per-sample modulo).
+public class LinearScanEngine {
+	// Detectors compare each sample with the one before it (samples[from - 1] is always valid)
+	public interface Detector {
+		// Returns the largest (unscaled) frame loss probability within samples[from] to samples[to - 1]
+		double getMaximum(int[] samples, int from, int to, double maxValue);
+	}
+
+	// A large/sudden change to zero amplitude indicates potential frame loss
+	public static class SignalCutoutDetector implements Detector {
+		public double getMaximum(int[] samples, int from, int to, double maxValue) {
+			long maxCutout = ScanKernels.getMaxCutout(samples, from, to, maxValue);
+			return (double) maxCutout / maxValue;	// Dividing once gives the same result as dividing every sample
+		}
+	}
+
+	// Sudden amplitude jumps indicate sinusoidal waveform disruption, and therefore potential frame loss
+	public static class SignalGradientDetector implements Detector {
+		public double getMaximum(int[] samples, int from, int to, double maxValue) {
+			long maxGradient = ScanKernels.getMaxGradient(samples, from, to, maxValue);
+			return (double) maxGradient / maxValue;
+		}
+	}
+
+	private FileProcessingTask task;
+
+	public LinearScanEngine(FileProcessingTask task) {
+		this.task = task;
+	}
+
+	// Returns one array of scaled window probabilities per detector (in the same order as 'detectors')
+	public double[][] scan(AudioFileReader reader, Detector[] detectors) throws Exception {
+		double maxValue = Math.round(Math.pow(2, reader.metaData.getSampleSizeInBits()));
+		int windowSize = Math.round(reader.metaData.getSampleRate()) * Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX];
+		String probabilityScale = Config.PROBABILITY_SCALE_VALUES[Config.PROBABILITY_SCALE_INDEX];
+		long end = reader.frameCount;
+		int probabilitiesLength = (int) Math.ceil((double) Math.max(end - 1, 0) / (double) windowSize) + 1;
+		double[][] probabilities = new double[detectors.length][probabilitiesLength];
+		double[] windowMaxima = new double[detectors.length];
+		int probabilitiesPointer = 0;
+		int[] block = new int[Config.DECODE_BLOCK_FRAMES + 1];	// block[0] holds the last sample of the previous block
+		long blockFrame = -1;		// Frame number of block[0]
+		long nextWindow = windowSize;
+		int windowFrames = 0;
+		int framesRead;
+		while ((framesRead = reader.read(block, 1, Config.DECODE_BLOCK_FRAMES)) > 0) {
+			if (task.taskCancelled()) return probabilities;
+			task.reportProgress(blockFrame + 1, end);
+			int from = (blockFrame == -1) ? 2 : 1;	// The first frame has no predecessor
+			int blockEnd = framesRead + 1;
+			while (from < blockEnd) {
+				int to = (int) Math.min(blockEnd, nextWindow - blockFrame);
+				for (int d = 0; d < detectors.length; d++) {
+					windowMaxima[d] = Math.max(windowMaxima[d], detectors[d].getMaximum(block, from, to, maxValue));
+				}
+				windowFrames += to - from;
+				from = to;
+				if (blockFrame + to == nextWindow && from < blockEnd) {	// Window is complete (and more audio follows)
+					for (int d = 0; d < detectors.length; d++) {
+						probabilities[d][probabilitiesPointer] = task.getScaledValue(windowMaxima[d], probabilityScale);
+						windowMaxima[d] = 0.0;
+					}
+					probabilitiesPointer++;
+					nextWindow += windowSize;
+					windowFrames = 0;
+				}
+			}
+			block[0] = block[framesRead];
+			blockFrame += framesRead;
+		}
+		if (windowFrames > 0) {		// Final window (which may be partial)
+			for (int d = 0; d < detectors.length; d++) {
+				probabilities[d][probabilitiesPointer] = task.getScaledValue(windowMaxima[d], probabilityScale);
+			}
+			probabilitiesPointer++;
+		}
+		for (int d = 0; d < detectors.length; d++) {	// Frame count is only an upper bound when streaming
+			probabilities[d] = Arrays.copyOf(probabilities[d], probabilitiesPointer);
+		}
+		return probabilities;
+	}
+}
@@ -0,0 +1,616 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Detects the length of an audio loop (i.e. the period of the recording).
+// Automatic detection uses autocorrelation: the autocorrelation of a decimated copy of the audio is calculated with an
+// FFT in O(N log N) time, and the best lag is then refined at successively finer resolutions down to single frames.
+// As in the original exhaustive search, lags stop being considered once the auto scan threshold (in seconds) has passed
+// without finding a better match.
+// Estimated ranges are searched coarse-to-fine with branch-and-bound pruning, and candidates are split across a fork/join pool.
+// Loop lengths are measured in int frames, so only the first LOOP_DETECTION_MAX_FRAMES frames of a file are examined.
+// Audio is read from the sample store a chunk (LOOP_SEARCH_CHUNK_FRAMES) at a time rather than copied onto the heap, and
+// decimated copies are held in sample stores, so the heap doesn't grow with the loop length or the recording length.
+public class LoopLengthEngine {
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN =	// Measures allocation per candidate
+		(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) ?
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+	private static final ThreadLocal<int[][]> SCRATCH =				// Each pool thread's chunk of both loops (see getLoopVariance)
+		ThreadLocal.withInitial(() -> new int[2][Config.LOOP_SEARCH_CHUNK_FRAMES]);
+
+	private FileProcessingTask task;
+
+	// Candidate length and its loop variance (the result of a candidate search)
+	private static class Candidate {
+		int length;
+		float variance;
+
+		Candidate(int length, float variance) {
+			this.length = length;
+			this.variance = variance;
+		}
+
+		// The lowest variance wins, and ties are resolved in favour of the shortest length (as in a sequential search)
+		static Candidate best(Candidate a, Candidate b) {
+			if (a == null) return b;
+			if (b == null) return a;
+			if (b.variance < a.variance || (b.variance == a.variance && b.length < a.length)) return b;
+			return a;
+		}
+	}
+
+	// State shared by every task in a candidate search
+	private static class SearchContext {
+		SampleStore data;
+		int frameRate;
+		int[] lengths;						// Candidate lengths (in ascending order)
+		float[] scores;						// Variance of each candidate (only recorded if not null, which disables pruning)
+		int[][] probeOrders;				// Frames probed first for each whole number of seconds of length (see getProbeOrder)
+		AtomicInteger bestVariance;			// Float bits of the lowest variance found so far (used for pruning)
+		AtomicLong completed;				// Number of candidates scored so far (used for progress output)
+		AtomicLong allocatedBytes;			// Heap memory allocated while scoring candidates
+	}
+
+	// Scores the candidates lengths[from] to lengths[to - 1] by recursively splitting them across the pool
+	private class CandidateSearch extends RecursiveTask<Candidate> {
+		private static final long serialVersionUID = 1L;
+
+		private SearchContext context;
+		private int from;
+		private int to;
+
+		CandidateSearch(SearchContext context, int from, int to) {
+			this.context = context;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Candidate compute() {
+			if (to - from > Config.LOOP_SEARCH_GRAIN) {
+				int middle = (from + to) >>> 1;
+				CandidateSearch lower = new CandidateSearch(context, from, middle);
+				CandidateSearch upper = new CandidateSearch(context, middle, to);
+				upper.fork();
+				Candidate best;
+				try {
+					best = lower.compute();
+				} finally {
+					upper.quietlyJoin();	// Subtasks never outlive the search (the store is freed once it returns)
+				}
+				return Candidate.best(best, upper.join());
+			}
+			int bestLength = -1;		// Lengths are in ascending order, so ties keep the shorter length
+			float bestVariance = Float.POSITIVE_INFINITY;
+			long allocatedBefore = getAllocatedBytes();
+			int[][] scratch = SCRATCH.get();
+			for (int c = from; c < to; c++) {
+				if (task.taskCancelled()) break;
+				int length = context.lengths[c];
+				int frameIncrement = getFrameIncrement(length, context.frameRate);
+				int[] probeOrder = context.probeOrders[length / context.frameRate];
+				float limit = (context.scores == null) ? Float.intBitsToFloat(context.bestVariance.get()) : Float.POSITIVE_INFINITY;
+				float variance = getLoopVariance(context.data, length, frameIncrement, probeOrder, limit, scratch[0], scratch[1]);
+				if (context.scores != null) {
+					context.scores[c] = variance;
+				}
+				if (bestLength == -1 || variance < bestVariance) {
+					bestLength = length;
+					bestVariance = variance;
+				}
+				int bits = Float.floatToIntBits(variance);		// Non-negative floats have the same order as their bits
+				for (int current = context.bestVariance.get(); bits < current; current = context.bestVariance.get()) {
+					if (context.bestVariance.compareAndSet(current, bits)) break;
+				}
+				context.completed.incrementAndGet();
+			}
+			context.allocatedBytes.addAndGet(getAllocatedBytes() - allocatedBefore);
+			return (bestLength == -1) ? null : new Candidate(bestLength, bestVariance);
+		}
+	}
+
+	public long candidatesScored;		// Statistics of the last candidate search
+	public long allocatedBytes;			// (-1 if diagnostics are off or the JVM can't measure per-thread allocation)
+
+	public LoopLengthEngine(FileProcessingTask task) {
+		this.task = task;
+	}
+
+	// Number of frames (from the start of 'data') that are used to detect the loop length
+	public int getDetectionLength(SampleStore data) {
+		return (int) Math.min(data.length(), Config.LOOP_DETECTION_MAX_FRAMES);
+	}
+
+	// Returns the loop length in frames (or -1 if no loop length could be found)
+	public int getAutomaticLoopLength(SampleStore data, int frameRate) throws Exception {
+		int length = getDetectionLength(data);
+		int minLoop = frameRate;
+		int maxLoop = length / 4;
+		if (maxLoop <= minLoop) return -1;
+		int factor = 1;		// Decimation factor of the coarsest level (always a power of 2)
+		while (length / factor > Config.AUTOCORRELATION_MAX_POINTS) {
+			factor *= 2;
+		}
+		int levels = Integer.numberOfTrailingZeros(factor);
+		this.task.reportProgress(0, levels + 1);
+		float[] level = decimateToFloat(data, length, factor);
+		if (task.taskCancelled()) return 0;
+		double[] correlations = getAutocorrelation(level);
+		if (task.taskCancelled()) return 0;
+		int minLag = Math.max(1, (minLoop + factor - 1) / factor);
+		int maxLag = Math.min(level.length - 1, maxLoop / factor);
+		long scanThreshold = ((long) frameRate * Config.SCAN_WINDOW_VALUES[Config.AUTO_SCAN_WINDOW_INDEX]) / factor;
+		double bestCorrelation = Double.NEGATIVE_INFINITY;
+		int bestLag = minLag;
+		for (int l = minLag; l <= maxLag; l++) {
+			if (correlations[l] > bestCorrelation) {
+				bestCorrelation = correlations[l];
+				bestLag = l;
+			} else if (l - bestLag > scanThreshold) {
+				maxLag = l;		// Once the auto scan threshold has passed without a better lag, longer lags are ignored
+				break;
+			}
+		}
+		int lag = -1;
+		for (int l = minLag; l <= maxLag; l++) {	// Multiples of the loop length also peak, so the shortest match is used
+			boolean peak = correlations[l] >= correlations[l - 1] && (l + 1 >= correlations.length || correlations[l] >= correlations[l + 1]);
+			if (peak && correlations[l] >= bestCorrelation - Config.LOOP_CORRELATION_TOLERANCE) {
+				lag = l;
+				break;
+			}
+		}
+		if (lag == -1) return -1;
+		for (factor /= 2; factor >= 1; factor /= 2) {	// Coarse-to-fine refinement
+			if (task.taskCancelled()) return 0;
+			this.task.reportProgress(levels - Integer.numberOfTrailingZeros(factor), levels + 1);
+			bestLag = -1;
+			bestCorrelation = 0.0;
+			int fromLag = Math.max(1, lag * 2 - 2);
+			double[] refinements = getCorrelations(data, factor, length / factor, fromLag, lag * 2 + 2);
+			for (int l = 0; l < refinements.length; l++) {
+				if (bestLag == -1 || refinements[l] > bestCorrelation) {
+					bestLag = fromLag + l;
+					bestCorrelation = refinements[l];
+				}
+			}
+			lag = bestLag;
+		}
+		return Math.max(minLoop, Math.min(maxLoop, lag));
+	}
+
+	// Returns the length in [minLoop, maxLoop) with the lowest loop variance (or -1 if the range is empty).
+	// Candidates are abandoned as soon as they can no longer beat the best variance found so far, which always
+	// gives the same result as scoring every candidate in full.
+	// Unless the most accurate optimisation mode is selected, large ranges are searched coarse-to-fine: every candidate
+	// is scored on a decimated copy of the audio, and only the best candidates (and their neighbours) are scored at
+	// the next finer level, down to the full sample rate.
+	public int getLoopLength(SampleStore data, int frameRate, int minLoop, int maxLoop) throws Exception {
+		if (maxLoop <= minLoop) return -1;
+		candidatesScored = 0;
+		allocatedBytes = isAllocationCounterEnabled() ? 0 : -1;
+		int[] lengths;
+		if (Config.OPTIMISATION_INDEX == 0 || maxLoop - minLoop < Config.LOOP_PYRAMID_MIN_CANDIDATES) {
+			lengths = new int[maxLoop - minLoop];
+			for (int c = 0; c < lengths.length; c++) {
+				lengths[c] = minLoop + c;
+			}
+		} else {
+			lengths = getShortlist(data, frameRate, minLoop, maxLoop);
+			if (lengths == null) return 0;	// Cancelled
+		}
+		Candidate best = search(data, frameRate, lengths, null);
+		if (task.taskCancelled()) return 0;
+		return (best == null) ? -1 : best.length;
+	}
+
+	// Runs the decimated levels of a coarse-to-fine search, returning the candidates for the full-rate level
+	private int[] getShortlist(SampleStore data, int frameRate, int minLoop, int maxLoop) throws Exception {
+		int[] factors = Config.LOOP_PYRAMID_FACTORS;
+		long window = Math.min(getDetectionLength(data), 2L * (maxLoop + factors[0]));	// Frames read by the coarsest level's search
+		SampleStore[] levels = new SampleStore[factors.length];
+		try {
+			decimate(data, window, factors, levels);
+			if (task.taskCancelled()) return null;
+			int[] lengths = null;
+			int previousFactor = 0;
+			for (int f = 0; f < factors.length; f++) {	// Coarsest first
+				int factor = factors[f];
+				int levelMin = (minLoop + factor - 1) / factor;
+				int levelMax = (maxLoop + factor - 1) / factor;
+				if (lengths == null) {
+					lengths = new int[levelMax - levelMin];
+					for (int c = 0; c < lengths.length; c++) {
+						lengths[c] = levelMin + c;
+					}
+				} else {
+					lengths = expandShortlist(lengths, previousFactor / factor, levelMin, levelMax);
+				}
+				float[] scores = new float[lengths.length];
+				search(levels[f], Math.max(1, frameRate / factor), lengths, scores);
+				levels[f].close();
+				if (task.taskCancelled()) return null;
+				lengths = getBestLengths(lengths, scores, Config.LOOP_PYRAMID_SHORTLIST);
+				previousFactor = factor;
+			}
+			return expandShortlist(lengths, previousFactor, minLoop, maxLoop);
+		} finally {
+			for (SampleStore level : levels) {
+				if (level != null) level.close();
+			}
+		}
+	}
+
+	// Scales shortlisted lengths up to the next level, including every length that rounds to the same coarse length
+	private int[] expandShortlist(int[] lengths, int scale, int levelMin, int levelMax) {
+		TreeSet<Integer> expanded = new TreeSet<Integer>();
+		for (int length : lengths) {
+			for (int l = (length - 1) * scale; l <= (length + 1) * scale; l++) {
+				if (l >= levelMin && l < levelMax) expanded.add(l);
+			}
+		}
+		int[] result = new int[expanded.size()];
+		int c = 0;
+		for (int length : expanded) {
+			result[c++] = length;
+		}
+		return result;
+	}
+
+	// Returns the 'count' lengths with the lowest scores
+	private int[] getBestLengths(int[] lengths, float[] scores, int count) {
+		Integer[] indices = new Integer[lengths.length];
+		for (int c = 0; c < indices.length; c++) {
+			indices[c] = c;
+		}
+		Arrays.sort(indices, (a, b) -> (scores[a] != scores[b]) ? Float.compare(scores[a], scores[b]) : Integer.compare(a, b));
+		int[] best = new int[Math.min(count, lengths.length)];
+		for (int c = 0; c < best.length; c++) {
+			best[c] = lengths[indices[c]];
+		}
+		return best;
+	}
+
+	// Scores the candidates on the fork/join pool (scores are recorded for every candidate if 'scores' isn't null)
+	private Candidate search(SampleStore data, int frameRate, int[] lengths, float[] scores) throws Exception {
+		if (lengths.length == 0) return null;
+		SearchContext context = new SearchContext();
+		int maxLength = lengths[lengths.length - 1] + 1;
+		context.data = data;
+		context.frameRate = frameRate;
+		context.lengths = lengths;
+		context.scores = scores;
+		context.probeOrders = new int[maxLength / frameRate + 1][];
+		Map<Integer, int[]> probeOrders = new HashMap<Integer, int[]>();	// Keyed by frame increment
+		for (int length : lengths) {
+			int seconds = length / frameRate;
+			if (context.probeOrders[seconds] != null) continue;
+			int frameIncrement = getFrameIncrement(length, frameRate);
+			if (!probeOrders.containsKey(frameIncrement)) {
+				if (task.taskCancelled()) return null;
+				probeOrders.put(frameIncrement, getProbeOrder(data, maxLength, frameIncrement));
+			}
+			context.probeOrders[seconds] = probeOrders.get(frameIncrement);
+		}
+		context.bestVariance = new AtomicInteger(Float.floatToIntBits(Float.POSITIVE_INFINITY));
+		context.completed = new AtomicLong();
+		context.allocatedBytes = new AtomicLong();
+		CandidateSearch search = new CandidateSearch(context, 0, lengths.length);
+		ForkJoinPool.commonPool().execute(search);
+		while (!search.isDone()) {		// Progress is printed from this thread only (worker threads just count candidates)
+			try {
+				search.get(Config.LOOP_SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				this.task.reportProgress(context.completed.get(), lengths.length);
+			}
+		}
+		candidatesScored += context.completed.get();
+		if (allocatedBytes != -1) {
+			allocatedBytes += context.allocatedBytes.get();
+		}
+		return search.join();
+	}
+
+	// Average difference between every 'frameIncrement'th frame of the first 'length' frames and the frame one loop later.
+	// Scoring stops (returning Float.POSITIVE_INFINITY) as soon as the variance is certain to exceed 'limit' (pass
+	// Float.POSITIVE_INFINITY to score every frame). The frames in 'probeOrder' are checked first, since they usually
+	// exceed the limit soonest; the loops are then summed in chunks that are bulk read into 'loop1' and 'loop2' (which
+	// must be the same length), so nothing is allocated per candidate.
+	public float getLoopVariance(SampleStore data, int length, int frameIncrement, int[] probeOrder, float limit,
+								 int[] loop1, int[] loop2) {
+		long limitSum = getLimitSum(limit, length);
+		if (limitSum != Long.MAX_VALUE) {
+			long probeSum = 0;	// A lower bound of the variance sum (every difference is non-negative)
+			for (int p = 0; p < probeOrder.length; p++) {
+				int i = probeOrder[p];
+				if (i >= length) continue;
+				probeSum += getDifference(data.get(i), data.get((long) length + i));
+				if (probeSum > limitSum) return Float.POSITIVE_INFINITY;
+			}
+		}
+		long varianceSum = 0;	// Integer sums are exact in any order (so pruning can't change the result)
+		long frames = ((long) length + frameIncrement - 1) / frameIncrement;
+		for (long k = 0; k < frames; k += loop1.length) {
+			int count = (int) Math.min(loop1.length, frames - k);
+			long position = k * frameIncrement;
+			data.read(position, frameIncrement, loop1, 0, count);
+			data.read(length + position, frameIncrement, loop2, 0, count);
+			for (int i = 0; i < count; i++) {
+				varianceSum += getDifference(loop1[i], loop2[i]);
+			}
+			if (varianceSum > limitSum) return Float.POSITIVE_INFINITY;
+		}
+		return (float) varianceSum / length;
+	}
+
+	// Relative difference between a frame and the frame one loop later
+	private static long getDifference(int sample1, int sample2) {
+		int value1 = sample1 == 0 ? sample1 + 1 : sample1; 		// Guard against zero-division below
+		int value2 = sample1 == 0 ? sample2 + 1 : sample2; 		// "sample1 == 0" is not a typo
+		return Math.abs((long) ((value2 - value1) / value1));
+	}
+
+	// Largest variance sum that doesn't exceed 'limit' once divided by 'length'
+	private long getLimitSum(float limit, int length) {
+		if (limit == Float.POSITIVE_INFINITY) return Long.MAX_VALUE;
+		long sum = (long) Math.floor((double) limit * length);
+		while ((float) (sum + 1) / length <= limit) {	// Correct any rounding differences between float and double
+			sum++;
+		}
+		while (sum >= 0 && (float) sum / length > limit) {
+			sum--;
+		}
+		return sum;
+	}
+
+	private static boolean isAllocationCounterEnabled() {
+		return Config.SHOW_DIAGNOSTICS && THREAD_BEAN != null && THREAD_BEAN.isThreadAllocatedMemoryEnabled();
+	}
+
+	// Total heap memory allocated by the current thread (or 0 if this can't be measured)
+	private static long getAllocatedBytes() {
+		return isAllocationCounterEnabled() ? THREAD_BEAN.getCurrentThreadAllocatedBytes() : 0;
+	}
+
+	private int getFrameIncrement(int length, int frameRate) {
+		int optimisationFactor = Config.OPTIMISATION_VALUES[Config.OPTIMISATION_INDEX];
+		return Math.max(1, (length / frameRate) * optimisationFactor);
+	}
+
+	// Returns the (at most) LOOP_SEARCH_PROBES quietest multiples of 'frameIncrement' below 'maxLoop', quietest first.
+	// Quiet frames are divisors in getLoopVariance, so they produce the largest contributions and reach the limit sooner.
+	private int[] getProbeOrder(SampleStore data, int maxLoop, int frameIncrement) {
+		long[] keys = new long[Config.LOOP_SEARCH_PROBES * 2];
+		int keyCount = 0;
+		long cutoff = Long.MAX_VALUE;	// Frames this loud (or louder) can no longer be probed
+		int[] block = new int[Config.LOOP_SEARCH_CHUNK_FRAMES];
+		int frames = (maxLoop + frameIncrement - 1) / frameIncrement;
+		for (int k = 0; k < frames; k += block.length) {
+			int count = Math.min(block.length, frames - k);
+			data.read((long) k * frameIncrement, frameIncrement, block, 0, count);
+			for (int j = 0; j < count; j++) {
+				long amplitude = Math.min(Math.abs((long) block[j]), Integer.MAX_VALUE);
+				long key = (amplitude << 32) | ((k + j) * frameIncrement);
+				if (key >= cutoff) continue;
+				if (keyCount == keys.length) {		// Only the quietest half is kept
+					Arrays.sort(keys);
+					keyCount = Config.LOOP_SEARCH_PROBES;
+					cutoff = keys[keyCount - 1];
+					if (key >= cutoff) continue;
+				}
+				keys[keyCount++] = key;
+			}
+		}
+		Arrays.sort(keys, 0, keyCount);
+		int[] probeOrder = new int[Math.min(keyCount, Config.LOOP_SEARCH_PROBES)];
+		for (int p = 0; p < probeOrder.length; p++) {
+			probeOrder[p] = (int) keys[p];
+		}
+		return probeOrder;
+	}
+
+	// Averages each group of 'factors[f]' frames in data[0] to data[length - 1] into a new store levels[f] (rounded to
+	// integers so that loop variances can be calculated). Every level is built in one pass of bulk reads from 'data'.
+	private void decimate(SampleStore data, long length, int[] factors, SampleStore[] levels) throws IOException {
+		long[] sums = new long[factors.length];
+		for (int f = 0; f < factors.length; f++) {
+			levels[f] = new SampleStore(length / factors[f]);
+		}
+		int[] block = new int[(int) Math.min(length, Config.LOOP_SEARCH_CHUNK_FRAMES)];
+		int[] averages = new int[block.length];
+		for (long position = 0; position < length; position += block.length) {
+			if (task.taskCancelled()) return;
+			int count = (int) Math.min(block.length, length - position);
+			data.read(position, block, 0, count);
+			for (int f = 0; f < factors.length; f++) {
+				int factor = factors[f];
+				long levelLength = length / factor;
+				int averageCount = 0;
+				for (int i = 0; i < count; i++) {
+					long frame = position + i;
+					if (frame / factor >= levelLength) break;	// Incomplete final group
+					sums[f] += block[i];
+					if ((frame + 1) % factor == 0) {
+						averages[averageCount++] = (int) Math.round((double) sums[f] / factor);
+						sums[f] = 0;
+					}
+				}
+				levels[f].append(averages, 0, averageCount);
+			}
+		}
+	}
+
+	// Averages each group of 'factor' frames in data[0] to data[length - 1] (which also acts as a low-pass filter)
+	private float[] decimateToFloat(SampleStore data, int length, int factor) {
+		float[] level = new float[length / factor];
+		for (int i = 0; i < level.length; i++) {
+			long sum = 0;
+			long offset = (long) i * factor;
+			for (int j = 0; j < factor; j++) {
+				sum += data.get(offset + j);
+			}
+			level[i] = (float) sum / (float) factor;
+		}
+		return level;
+	}
+
+	// Normalised autocorrelation of every lag (each value is in the range -1 to 1)
+	private double[] getAutocorrelation(float[] level) throws Exception {
+		int n = level.length;
+		int size = 1;
+		while (size < n * 2) {		// Zero-padding prevents circular wrap-around
+			size *= 2;
+		}
+		double mean = getMean(level);
+		double[] real = new double[size];
+		double[] imag = new double[size];
+		double[] energy = new double[n + 1];	// Cumulative energy (used to normalise each lag by its overlap)
+		for (int i = 0; i < n; i++) {
+			real[i] = level[i] - mean;
+			energy[i + 1] = energy[i] + (real[i] * real[i]);
+		}
+		fft(real, imag, false);
+		for (int i = 0; i < size; i++) {	// Power spectrum
+			real[i] = (real[i] * real[i]) + (imag[i] * imag[i]);
+			imag[i] = 0.0;
+		}
+		if (task.taskCancelled()) return real;
+		fft(real, imag, true);
+		double[] correlations = new double[n];
+		for (int lag = 0; lag < n; lag++) {
+			double overlapEnergy = Math.sqrt(energy[n - lag] * (energy[n] - energy[lag]));
+			correlations[lag] = overlapEnergy > 0.0 ? (real[lag] / size) / overlapEnergy : 0.0;
+		}
+		return correlations;
+	}
+
+	private double getMean(float[] level) {
+		double sum = 0.0;
+		for (int i = 0; i < level.length; i++) {
+			sum += level[i];
+		}
+		return sum / level.length;
+	}
+
+	// Normalised correlation between the audio and a copy of itself that is delayed by each lag from 'fromLag' to
+	// 'toLag' (at most), where the audio is decimated by 'factor' (to 'levelLength' frames) as in decimateToFloat.
+	// The decimated audio is calculated a chunk at a time rather than stored, and every lag is summed in one pass.
+	private double[] getCorrelations(SampleStore data, int factor, int levelLength, int fromLag, int toLag) {
+		toLag = Math.min(toLag, levelLength - 1);
+		if (toLag < fromLag) return new double[0];
+		int lags = toLag - fromLag + 1;
+		int[] block = new int[Config.LOOP_SEARCH_CHUNK_FRAMES];
+		double[] values1 = new double[Config.LOOP_SEARCH_CHUNK_FRAMES];
+		double[] values2 = new double[Config.LOOP_SEARCH_CHUNK_FRAMES + lags - 1];	// The same frames delayed by 'fromLag'
+		double sum = 0.0;
+		for (int i = 0; i < levelLength; i += values1.length) {
+			int count = Math.min(values1.length, levelLength - i);
+			readLevel(data, factor, i, values1, count, block);
+			for (int j = 0; j < count; j++) {
+				sum += values1[j];
+			}
+		}
+		double mean = sum / levelLength;
+		double[] products = new double[lags];
+		double[] energies1 = new double[lags];
+		double[] energies2 = new double[lags];
+		for (int i = 0; i + fromLag < levelLength; i += values1.length) {
+			int count = Math.min(values1.length, levelLength - fromLag - i);
+			readLevel(data, factor, i, values1, count, block);
+			readLevel(data, factor, i + fromLag, values2, Math.min(values2.length, levelLength - fromLag - i), block);
+			for (int l = 0; l < lags; l++) {
+				int end = Math.min(count, levelLength - (fromLag + l) - i);
+				double product = products[l], energy1 = energies1[l], energy2 = energies2[l];
+				for (int j = 0; j < end; j++) {
+					double value1 = values1[j] - mean;
+					double value2 = values2[j + l] - mean;
+					product += value1 * value2;
+					energy1 += value1 * value1;
+					energy2 += value2 * value2;
+				}
+				products[l] = product;
+				energies1[l] = energy1;
+				energies2[l] = energy2;
+			}
+		}
+		double[] correlations = new double[lags];
+		for (int l = 0; l < lags; l++) {
+			correlations[l] = (energies1[l] > 0.0 && energies2[l] > 0.0) ? products[l] / Math.sqrt(energies1[l] * energies2[l]) : 0.0;
+		}
+		return correlations;
+	}
+
+	// Copies frames start to (start + count - 1) of the audio decimated by 'factor' into 'values' ('block' is scratch)
+	private void readLevel(SampleStore data, int factor, long start, double[] values, int count, int[] block) {
+		long frame = start * factor;
+		long end = (start + count) * factor;
+		long sum = 0;
+		int grouped = 0;
+		int v = 0;
+		while (frame < end) {
+			int n = (int) Math.min(block.length, end - frame);
+			data.read(frame, block, 0, n);
+			for (int i = 0; i < n; i++) {
+				sum += block[i];
+				if (++grouped == factor) {
+					if (factor == 1) {
+						values[v++] = sum;		// Full rate samples aren't rounded to floats
+					} else {
+						values[v++] = (float) sum / (float) factor;
+					}
+					sum = 0;
+					grouped = 0;
+				}
+			}
+			frame += n;
+		}
+	}
+
+	// In-place iterative radix-2 FFT (the array length must be a power of 2; the inverse transform isn't scaled)
+	private void fft(double[] real, double[] imag, boolean inverse) {
+		int n = real.length;
+		for (int i = 1, j = 0; i < n; i++) {	// Bit-reversal permutation
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				double temp = real[i]; real[i] = real[j]; real[j] = temp;
+				temp = imag[i]; imag[i] = imag[j]; imag[j] = temp;
+			}
+		}
+		double[] cosTable = new double[n / 2];		// Twiddle factors are calculated directly (rather than by recurrence) for accuracy
+		double[] sinTable = new double[n / 2];
+		for (int i = 0; i < n / 2; i++) {
+			cosTable[i] = Math.cos(2.0 * Math.PI * i / n);
+			sinTable[i] = (inverse ? 1.0 : -1.0) * Math.sin(2.0 * Math.PI * i / n);
+		}
+		for (int length = 2; length <= n; length <<= 1) {
+			int half = length / 2;
+			int stride = n / length;
+			for (int i = 0; i < n; i += length) {
+				for (int j = 0; j < half; j++) {
+					int a = i + j;
+					int b = a + half;
+					double wReal = cosTable[j * stride];
+					double wImag = sinTable[j * stride];
+					double bReal = (real[b] * wReal) - (imag[b] * wImag);
+					double bImag = (real[b] * wImag) + (imag[b] * wReal);
+					real[b] = real[a] - bReal;
+					imag[b] = imag[a] - bImag;
+					real[a] += bReal;
+					imag[a] += bImag;
+				}
+			}
+		}
+	}
+}
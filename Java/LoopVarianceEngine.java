@@ -0,0 +1,104 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Calculates the loop variance of every analysis window, with the windows split across a fork/join pool.
+// Each window only reads the audio data (including the frames one loop length earlier), so segments need no shared
+// state, and each window is still summed sequentially (i.e. the results are bit-identical to a single-threaded pass).
+// Each window (and the audio one loop length earlier) is copied out of the sample store into a scratch array first.
+public class LoopVarianceEngine {
+	private FileProcessingTask task;
+
+	// Calculates variances[from] to variances[to - 1] by recursively splitting the windows across the pool
+	private class VarianceSearch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private SampleStore audioData;
+		private int loopLength;
+		private int windowSize;
+		private long start;			// First frame of the first window
+		private double[] variances;
+		private int from;
+		private int to;
+		private AtomicLong completed;	// Number of windows calculated so far (used for progress output)
+
+		VarianceSearch(SampleStore audioData, int loopLength, int windowSize, long start, double[] variances,
+					   int from, int to, AtomicLong completed) {
+			this.audioData = audioData;
+			this.loopLength = loopLength;
+			this.windowSize = windowSize;
+			this.start = start;
+			this.variances = variances;
+			this.from = from;
+			this.to = to;
+			this.completed = completed;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > Config.VARIANCE_SEGMENT_WINDOWS) {
+				int middle = (from + to) >>> 1;
+				VarianceSearch lower = new VarianceSearch(audioData, loopLength, windowSize, start, variances, from, middle, completed);
+				VarianceSearch upper = new VarianceSearch(audioData, loopLength, windowSize, start, variances, middle, to, completed);
+				upper.fork();
+				try {
+					lower.compute();
+				} finally {
+					upper.quietlyJoin();	// Subtasks never outlive the search (the store is freed once it returns)
+				}
+				upper.join();
+				return;
+			}
+			try {
+				String varianceScale = Config.VARIANCE_SCALE_VALUES[Config.VARIANCE_SCALE_INDEX];
+				double[] terms = new double[ScanKernels.TERM_BLOCK_SIZE];
+				int[] window = new int[windowSize * 2];		// The earlier audio, followed by the window itself
+				for (int w = from; w < to; w++) {
+					if (task.taskCancelled()) return;
+					long frame = start + ((long) w * windowSize);
+					audioData.read(frame - loopLength, window, 0, windowSize);
+					audioData.read(frame, window, windowSize, windowSize);
+					double varianceSum = ScanKernels.getLoopVarianceSum(window, windowSize, windowSize, windowSize, terms);
+					double variance = varianceSum / windowSize;
+					variances[w] = task.getScaledValue(variance, varianceScale);
+					completed.incrementAndGet();
+				}
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}
+	}
+
+	public LoopVarianceEngine(FileProcessingTask task) {
+		this.task = task;
+	}
+
+	public double[] getLoopVariances(int loopLength, SampleStore audioData, int sampleRate) throws Exception {
+		int windowSize = sampleRate * Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX];
+		long start = (long) windowSize + loopLength;
+		long end = audioData.length() - windowSize;
+		int variancesLength = (end >= start) ? (int) ((end - start) / windowSize) + 1 : 0;	// Windows start at 'start' to 'end' inclusive
+		double[] variances = new double[variancesLength];
+		if (variancesLength == 0) return variances;
+		AtomicLong completed = new AtomicLong();
+		VarianceSearch search = new VarianceSearch(audioData, loopLength, windowSize, start, variances,
+												   0, variancesLength, completed);
+		ForkJoinPool.commonPool().execute(search);
+		while (!search.isDone()) {		// Progress is printed from this thread only
+			try {
+				search.get(Config.LOOP_SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				this.task.reportProgress(completed.get(), variancesLength);
+			}
+		}
+		search.join();
+		return variances;
+	}
+}
@@ -0,0 +1,56 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+
+// Limits the total estimated memory of the work that is running at once.
+// Work that is larger than the whole budget is still started, but only once nothing else is running.
+// The actual memory used by each piece of work can be measured with the budget's monitor.
+public class MemoryBudget implements Closeable {
+	private long limit;
+	private long used;
+	private int running;
+	private MemoryMonitor monitor = new MemoryMonitor();
+
+	public MemoryBudget(long limit) {
+		this.limit = limit;
+	}
+
+	// Blocks until 'bytes' fit in the budget (returns false if the task is cancelled while waiting)
+	public synchronized boolean acquire(long bytes, FileProcessingTask task) throws InterruptedException {
+		while (running > 0 && used + bytes > limit) {
+			if (task.taskCancelled()) return false;
+			wait(100);		// Also wakes periodically to check for cancellation
+		}
+		used += bytes;
+		running++;
+		return true;
+	}
+
+	public synchronized void release(long bytes) {
+		used -= bytes;
+		running--;
+		notifyAll();
+	}
+
+	public synchronized long getUsed() {
+		return used;
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+
+	public MemoryMonitor getMonitor() {
+		return monitor;
+	}
+
+	@Override
+	public void close() {
+		monitor.close();
+	}
+}
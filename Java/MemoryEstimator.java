@@ -0,0 +1,63 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+
+import javax.sound.sampled.*;
+
+// Estimates the memory needed to decode and analyse an audio file, using only its header (so the estimate is known
+// before the file is started). The estimate covers everything that is held until the analysis has finished:
+//   Loop Scan: the decoded audio (one int per frame, unless it is stored in a temporary file), plus the decimated
+//              copies and autocorrelation arrays of loop length detection (only for a file that detects the loop length)
+//   Linear Scan and Analyse Gain: the read-ahead and decoding buffers (audio is streamed), plus the analysis results
+// Files whose header can't be read are estimated using the readme's formula (2x the file size).
+public class MemoryEstimator {
+	private static final int AUTOCORRELATION_BYTES_PER_POINT = 84;	// float level, complex FFT of twice the length, energies
+	private static final int RESULT_BYTES_PER_SECOND = 640;		// Analysis results (windows can be as short as 0.1 seconds)
+
+	public static long estimate(String tool, File file, boolean detectsLoop) {
+		AudioFormat format;
+		long frames;
+		try {
+			AudioFileReader.DataChunk chunk = AudioFileReader.getDataChunk(file);
+			if (chunk != null) {
+				format = chunk.metaData;
+				frames = chunk.length / chunk.frameSize;
+			} else {
+				AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+				format = fileFormat.getFormat();
+				frames = (fileFormat.getFrameLength() != AudioSystem.NOT_SPECIFIED) ? fileFormat.getFrameLength() :
+						 file.length() / Math.max(1, format.getFrameSize());
+			}
+		} catch (Exception e) {
+			return 2 * file.length();
+		}
+		long sampleRate = Math.max(1, Math.round(format.getSampleRate()));
+		long memory = Config.FILE_BASE_MEMORY + ((frames / sampleRate) + 1) * RESULT_BYTES_PER_SECOND;
+		if (tool.equals(Config.LOOP_SCAN)) {
+			long decodedBytes = frames * 4;
+			if (decodedBytes <= Config.SAMPLE_SPILL_THRESHOLD) {
+				memory += decodedBytes;
+			}
+			long windowBytes = sampleRate * Config.TIME_SCALE_VALUES[Config.TIME_SCALE_INDEX] * 8;	// Scratch copy per thread
+			memory += windowBytes * Runtime.getRuntime().availableProcessors();
+			if (detectsLoop) {
+				long detectionFrames = Math.min(frames, Config.LOOP_DETECTION_MAX_FRAMES);
+				for (int factor : Config.LOOP_PYRAMID_FACTORS) {	// Decimated copies of two loops (of at most a quarter of the audio)
+					memory += (detectionFrames / 2 / factor) * 4;
+				}
+				memory += Math.min(detectionFrames, Config.AUTOCORRELATION_MAX_POINTS) * AUTOCORRELATION_BYTES_PER_POINT;
+			}
+		} else {
+			if (Config.READ_AHEAD_BLOCKS > 0) {
+				memory += Config.READ_AHEAD_BLOCKS * Config.READ_AHEAD_BLOCK_SIZE;
+			}
+			memory += Config.DECODE_BLOCK_FRAMES * 4L * 2;
+		}
+		return memory;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.concurrent.*;
+
+// Samples the memory used by the application (the Java heap, plus direct and memory-mapped buffers) on a background
+// thread, and records the peak usage while each tracked item (e.g. a file being decoded and analysed) is in progress.
+// Peaks are measured relative to the usage when tracking started, so they include garbage that hasn't been collected
+// yet, and anything allocated by other items running at the same time (i.e. they are an upper bound).
+public class MemoryMonitor implements Closeable {
+	public static class Tracker {
+		private long start;
+		private long peak;
+	}
+
+	private CopyOnWriteArrayList<Tracker> trackers = new CopyOnWriteArrayList<Tracker>();
+	private Thread thread;
+	private volatile boolean closed;
+
+	public MemoryMonitor() {
+		this.thread = new Thread(this::sampleUsage, "Audiscope memory monitor");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public Tracker startTracking() {
+		Tracker tracker = new Tracker();
+		tracker.start = getUsedMemory();
+		tracker.peak = tracker.start;
+		trackers.add(tracker);
+		return tracker;
+	}
+
+	// Returns the peak increase in memory usage while the tracker was running
+	public long stopTracking(Tracker tracker) {
+		sample();
+		trackers.remove(tracker);
+		synchronized (this) {
+			return Math.max(0, tracker.peak - tracker.start);
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		thread.interrupt();
+	}
+
+	// Bytes of heap, direct and mapped memory in use
+	public static long getUsedMemory() {
+		long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			used += Math.max(0, pool.getMemoryUsed());
+		}
+		return used;
+	}
+
+	private void sampleUsage() {
+		while (!closed) {
+			if (!trackers.isEmpty()) sample();
+			try {
+				Thread.sleep(Config.MEMORY_SAMPLE_INTERVAL);
+			} catch (InterruptedException e) {
+				return;		// Closed
+			}
+		}
+	}
+
+	private synchronized void sample() {
+		long used = getUsedMemory();
+		for (Tracker tracker : trackers) {
+			tracker.peak = Math.max(tracker.peak, used);
+		}
+	}
+}
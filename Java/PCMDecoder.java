@@ -0,0 +1,301 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.nio.*;
+
+// Converts raw PCM bytes into mono integer samples.
+// Each supported combination of bit depth, byte order and channel count has its own loop, so that the
+// per-frame work is reduced to a handful of shifts and (for multi-channel audio) a single downmix.
+// Samples are written straight into the destination array; no memory is allocated while decoding.
+// Byte arrays and byte buffers (e.g. memory-mapped files) are both supported.
+public class PCMDecoder {
+	// Decode 'frames' frames starting at byte 'offset' of 'buffer' into 'data' (starting at 'dataPointer').
+	// Returns the updated data pointer.
+	public static int decode(byte[] buffer, int offset, int frames, int[] data, int dataPointer,
+							 int sampleSize, int channels, int frameSize, boolean bigEndian) {
+		boolean packed = (sampleSize % 8 == 0) && (frameSize == channels * (sampleSize / 8));
+		if (!packed) {
+			return decodeGeneric(buffer, offset, frames, data, dataPointer, sampleSize, channels, frameSize, bigEndian);
+		} else if (channels == 1) {
+			return decodeMono(buffer, offset, frames, data, dataPointer, sampleSize, bigEndian);
+		} else if (channels == 2) {
+			return decodeStereo(buffer, offset, frames, data, dataPointer, sampleSize, bigEndian);
+		} else {
+			return decodeMultiChannel(buffer, offset, frames, data, dataPointer, sampleSize, channels, bigEndian);
+		}
+	}
+
+	// Index of the first frame containing a non-zero byte (or 'start' if every frame is silent)
+	public static int findSoundStart(byte[] buffer, int start, int end, int frameSize) {
+		for (int f = start; f < end; f += frameSize) {
+			for (int b = f; b < f + frameSize; b++) {
+				if (buffer[b] != 0) return f;
+			}
+		}
+		return start;
+	}
+
+	// Index of the last frame (searching backwards from 'end') containing a non-zero byte (or 'end' if none exists)
+	public static int findSoundEnd(byte[] buffer, int start, int end, int frameSize) {
+		for (int f = end; f > start; f -= frameSize) {
+			for (int b = f; b < f + frameSize; b++) {
+				if (buffer[b] != 0) return f;
+			}
+		}
+		return end;
+	}
+
+	// Sample readers ("& 0xff" prevents sign-extension of the lower bytes)
+	private static int read8(byte[] b, int p) {
+		return b[p];
+	}
+	private static int read16LE(byte[] b, int p) {
+		return (b[p] & 0xff) | (b[p + 1] << 8);
+	}
+	private static int read16BE(byte[] b, int p) {
+		return (b[p] << 8) | (b[p + 1] & 0xff);
+	}
+	private static int read24LE(byte[] b, int p) {
+		return (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8) | (b[p + 2] << 16);
+	}
+	private static int read24BE(byte[] b, int p) {
+		return (b[p] << 16) | ((b[p + 1] & 0xff) << 8) | (b[p + 2] & 0xff);
+	}
+	private static int read32LE(byte[] b, int p) {
+		return (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8) | ((b[p + 2] & 0xff) << 16) | (b[p + 3] << 24);
+	}
+	private static int read32BE(byte[] b, int p) {
+		return (b[p] << 24) | ((b[p + 1] & 0xff) << 16) | ((b[p + 2] & 0xff) << 8) | (b[p + 3] & 0xff);
+	}
+	private static int readGeneric(byte[] b, int p, int channelSize, boolean bigEndian) {
+		int value = 0;
+		for (int i = 0; i < channelSize; i++) {
+			int shift = bigEndian ? (channelSize - 1 - i) * 8 : i * 8;
+			if (shift < (channelSize - 1) * 8) {
+				value |= (b[p + i] & 0xff) << shift;
+			} else {	// Only the most significant byte is sign-extended
+				value |= b[p + i] << shift;
+			}
+		}
+		return value;
+	}
+
+	// Equivalent to FileProcessingTask.average(int[]) for two channels
+	private static int downmix(int left, int right) {
+		return Math.round(((float) left + (float) right) / 2.0f);
+	}
+
+	private static int decodeMono(byte[] b, int p, int frames, int[] data, int d, int sampleSize, boolean bigEndian) {
+		int end = d + frames;
+		switch (sampleSize) {
+			case 8:
+				for (; d < end; d++, p += 1) { data[d] = read8(b, p); }
+				break;
+			case 16:
+				if (bigEndian) {
+					for (; d < end; d++, p += 2) { data[d] = read16BE(b, p); }
+				} else {
+					for (; d < end; d++, p += 2) { data[d] = read16LE(b, p); }
+				}
+				break;
+			case 24:
+				if (bigEndian) {
+					for (; d < end; d++, p += 3) { data[d] = read24BE(b, p); }
+				} else {
+					for (; d < end; d++, p += 3) { data[d] = read24LE(b, p); }
+				}
+				break;
+			case 32:
+				if (bigEndian) {
+					for (; d < end; d++, p += 4) { data[d] = read32BE(b, p); }
+				} else {
+					for (; d < end; d++, p += 4) { data[d] = read32LE(b, p); }
+				}
+				break;
+			default:
+				return decodeGeneric(b, p, frames, data, d, sampleSize, 1, sampleSize / 8, bigEndian);
+		}
+		return d;
+	}
+
+	private static int decodeStereo(byte[] b, int p, int frames, int[] data, int d, int sampleSize, boolean bigEndian) {
+		int end = d + frames;
+		switch (sampleSize) {
+			case 8:
+				for (; d < end; d++, p += 2) { data[d] = downmix(read8(b, p), read8(b, p + 1)); }
+				break;
+			case 16:
+				if (bigEndian) {
+					for (; d < end; d++, p += 4) { data[d] = downmix(read16BE(b, p), read16BE(b, p + 2)); }
+				} else {
+					for (; d < end; d++, p += 4) { data[d] = downmix(read16LE(b, p), read16LE(b, p + 2)); }
+				}
+				break;
+			case 24:
+				if (bigEndian) {
+					for (; d < end; d++, p += 6) { data[d] = downmix(read24BE(b, p), read24BE(b, p + 3)); }
+				} else {
+					for (; d < end; d++, p += 6) { data[d] = downmix(read24LE(b, p), read24LE(b, p + 3)); }
+				}
+				break;
+			case 32:
+				if (bigEndian) {
+					for (; d < end; d++, p += 8) { data[d] = downmix(read32BE(b, p), read32BE(b, p + 4)); }
+				} else {
+					for (; d < end; d++, p += 8) { data[d] = downmix(read32LE(b, p), read32LE(b, p + 4)); }
+				}
+				break;
+			default:
+				return decodeGeneric(b, p, frames, data, d, sampleSize, 2, (sampleSize / 8) * 2, bigEndian);
+		}
+		return d;
+	}
+
+	// Averages any number of channels (summed as floats to match FileProcessingTask.average(int[]))
+	private static int decodeMultiChannel(byte[] b, int p, int frames, int[] data, int d, int sampleSize,
+										  int channels, boolean bigEndian) {
+		int channelSize = sampleSize / 8;
+		int end = d + frames;
+		for (; d < end; d++) {
+			float total = 0.0f;
+			for (int c = 0; c < channels; c++, p += channelSize) {
+				switch (sampleSize) {
+					case 8:
+						total += read8(b, p);
+						break;
+					case 16:
+						total += bigEndian ? read16BE(b, p) : read16LE(b, p);
+						break;
+					case 24:
+						total += bigEndian ? read24BE(b, p) : read24LE(b, p);
+						break;
+					default:
+						total += bigEndian ? read32BE(b, p) : read32LE(b, p);
+				}
+			}
+			data[d] = Math.round(total / channels);
+		}
+		return d;
+	}
+
+	// Handles non-standard sample sizes and padded frames
+	private static int decodeGeneric(byte[] b, int p, int frames, int[] data, int d, int sampleSize,
+									 int channels, int frameSize, boolean bigEndian) {
+		int channelSize = sampleSize / 8;
+		int end = d + frames;
+		for (; d < end; d++, p += frameSize) {
+			if (channels == 1) {
+				data[d] = readGeneric(b, p, channelSize, bigEndian);
+			} else {
+				float total = 0.0f;
+				for (int c = 0; c < channels; c++) {
+					total += readGeneric(b, p + (c * channelSize), channelSize, bigEndian);
+				}
+				data[d] = Math.round(total / channels);
+			}
+		}
+		return d;
+	}
+
+	// ByteBuffer equivalent of decode(byte[], ...), used to decode memory-mapped files in place.
+	// The buffer's byte order is set according to 'bigEndian'.
+	public static int decode(ByteBuffer buffer, int offset, int frames, int[] data, int dataPointer,
+							 int sampleSize, int channels, int frameSize, boolean bigEndian) {
+		buffer.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		boolean packed = (sampleSize % 8 == 0) && (frameSize == channels * (sampleSize / 8));
+		if (!packed || channels > 2 || sampleSize > 32) {
+			return decodeGeneric(buffer, offset, frames, data, dataPointer, sampleSize, channels, frameSize, bigEndian);
+		} else if (channels == 1) {
+			return decodeMono(buffer, offset, frames, data, dataPointer, sampleSize, bigEndian);
+		} else {
+			return decodeStereo(buffer, offset, frames, data, dataPointer, sampleSize, bigEndian);
+		}
+	}
+
+	// Sample readers for byte buffers (16-bit and 32-bit reads use the buffer's byte order)
+	private static int read24LE(ByteBuffer b, int p) {
+		return (b.get(p) & 0xff) | ((b.get(p + 1) & 0xff) << 8) | (b.get(p + 2) << 16);
+	}
+	private static int read24BE(ByteBuffer b, int p) {
+		return (b.get(p) << 16) | ((b.get(p + 1) & 0xff) << 8) | (b.get(p + 2) & 0xff);
+	}
+	private static int readGeneric(ByteBuffer b, int p, int channelSize, boolean bigEndian) {
+		int value = 0;
+		for (int i = 0; i < channelSize; i++) {
+			int shift = bigEndian ? (channelSize - 1 - i) * 8 : i * 8;
+			if (shift < (channelSize - 1) * 8) {
+				value |= (b.get(p + i) & 0xff) << shift;
+			} else {	// Only the most significant byte is sign-extended
+				value |= b.get(p + i) << shift;
+			}
+		}
+		return value;
+	}
+
+	private static int decodeMono(ByteBuffer b, int p, int frames, int[] data, int d, int sampleSize, boolean bigEndian) {
+		int end = d + frames;
+		switch (sampleSize) {
+			case 8:
+				for (; d < end; d++, p += 1) { data[d] = b.get(p); }
+				break;
+			case 16:
+				for (; d < end; d++, p += 2) { data[d] = b.getShort(p); }
+				break;
+			case 24:
+				if (bigEndian) {
+					for (; d < end; d++, p += 3) { data[d] = read24BE(b, p); }
+				} else {
+					for (; d < end; d++, p += 3) { data[d] = read24LE(b, p); }
+				}
+				break;
+			default:
+				for (; d < end; d++, p += 4) { data[d] = b.getInt(p); }
+		}
+		return d;
+	}
+
+	private static int decodeStereo(ByteBuffer b, int p, int frames, int[] data, int d, int sampleSize, boolean bigEndian) {
+		int end = d + frames;
+		switch (sampleSize) {
+			case 8:
+				for (; d < end; d++, p += 2) { data[d] = downmix(b.get(p), b.get(p + 1)); }
+				break;
+			case 16:
+				for (; d < end; d++, p += 4) { data[d] = downmix(b.getShort(p), b.getShort(p + 2)); }
+				break;
+			case 24:
+				if (bigEndian) {
+					for (; d < end; d++, p += 6) { data[d] = downmix(read24BE(b, p), read24BE(b, p + 3)); }
+				} else {
+					for (; d < end; d++, p += 6) { data[d] = downmix(read24LE(b, p), read24LE(b, p + 3)); }
+				}
+				break;
+			default:
+				for (; d < end; d++, p += 8) { data[d] = downmix(b.getInt(p), b.getInt(p + 4)); }
+		}
+		return d;
+	}
+
+	// Handles multi-channel audio, non-standard sample sizes and padded frames
+	private static int decodeGeneric(ByteBuffer b, int p, int frames, int[] data, int d, int sampleSize,
+									 int channels, int frameSize, boolean bigEndian) {
+		int channelSize = sampleSize / 8;
+		int end = d + frames;
+		for (; d < end; d++, p += frameSize) {
+			if (channels == 1) {
+				data[d] = readGeneric(b, p, channelSize, bigEndian);
+			} else {
+				float total = 0.0f;
+				for (int c = 0; c < channels; c++) {
+					total += readGeneric(b, p + (c * channelSize), channelSize, bigEndian);
+				}
+				data[d] = Math.round(total / channels);
+			}
+		}
+		return d;
+	}
+}
\ No newline at end of file
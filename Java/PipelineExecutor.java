@@ -0,0 +1,335 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Runs each file of a batch through a series of stages (e.g. decode -> analyse -> render), with each stage on its own
+// threads, so that one file can be decoded while the previous file is still being analysed or rendered.
+// Stages are connected by bounded queues (which limits the number of decoded files held at once), and items always
+// enter a stage in file order. Text output from each file is held until every earlier file has finished, so the
+// log is identical to a sequential run (only the file that is currently being logged reports progress).
+// If a file fails, the files before it are still completed, and the files after it are discarded (as if they had never
+// been started), and the exception is then rethrown by run().
+// Executors can be nested (e.g. a pipeline of files inside each of several concurrent batches): an executor that is
+// created by a stage thread prints through the item that created it, so each outer item's output stays grouped.
+// If a memory budget is set, each item reserves its estimated memory before it enters the first stage (waiting until
+// it fits in the budget), and releases it once it has left the stages that hold that memory.
+public class PipelineExecutor {
+	public interface Stage {
+		// Returns the input of the next stage (or null to stop processing the item, e.g. if the task was cancelled).
+		// Once called, the stage owns its input, so it must release it (e.g. close it) even if it throws.
+		Object process(int index, Object input) throws Exception;
+	}
+
+	public interface Estimator {
+		long estimate(int index);		// Measured in bytes
+	}
+
+	private static final ThreadLocal<Item> CURRENT_ITEM = new ThreadLocal<Item>();	// Item that a stage thread is processing
+	private static final Object SKIPPED = new Object();		// Passed through the remaining stages in place of a stopped item
+
+	// An item on its way through the stages
+	private static class Item {
+		PipelineExecutor executor;
+		int index;
+		Object value;
+
+		Item(PipelineExecutor executor, int index, Object value) {
+			this.executor = executor;
+			this.index = index;
+			this.value = value;
+		}
+	}
+
+	private class StageRunner {
+		String name;
+		int concurrency;
+		Stage stage;
+		BlockingQueue<Item> input;		// Null for the first stage
+		StageRunner next;
+		AtomicInteger taken = new AtomicInteger();
+		TreeMap<Integer, Item> completed = new TreeMap<Integer, Item>();	// Completed out of order (see forward)
+		int nextIndex;
+	}
+
+	private FileProcessingTask task;
+	private Item parent;				// Item of an enclosing executor (null unless nested)
+	private ArrayList<StageRunner> stages = new ArrayList<StageRunner>();
+	private int itemCount;
+	private boolean[] finished;
+	private ArrayList<ArrayList<String>> heldOutput;
+	private int liveIndex;				// Item whose output is printed immediately
+	private int failedIndex;			// Lowest item that threw an exception
+	private Exception failure;
+	private MemoryBudget budget;		// Null unless items reserve memory
+	private Estimator estimator;
+	private int reservedStages;			// Stages that an item's reservation is held for
+	private long[] predictedMemory;		// Bytes reserved by each item (-1 if the item was never started)
+	private long[] peakMemory;			// Peak memory measured while each item held its reservation (-1 if unknown)
+	private MemoryMonitor.Tracker[] trackers;
+
+	public PipelineExecutor(FileProcessingTask task) {
+		this.task = task;
+		this.parent = CURRENT_ITEM.get();
+	}
+
+	// Stages run in the order that they are added
+	public void addStage(String name, int concurrency, Stage stage) {
+		StageRunner runner = new StageRunner();
+		runner.name = name;
+		runner.concurrency = Math.max(1, concurrency);
+		runner.stage = stage;
+		if (!stages.isEmpty()) {
+			runner.input = new ArrayBlockingQueue<Item>(Math.max(1, Config.PIPELINE_QUEUE_CAPACITY));
+			stages.get(stages.size() - 1).next = runner;
+		}
+		stages.add(runner);
+	}
+
+	// Items reserve memory from 'budget' for the first 'stageCount' stages
+	public void setMemoryBudget(MemoryBudget budget, int stageCount, Estimator estimator) {
+		this.budget = budget;
+		this.reservedStages = stageCount;
+		this.estimator = estimator;
+	}
+
+	// Processes items 0 to itemCount - 1, returning once every item has left the last stage
+	public void run(int itemCount) throws Exception {
+		this.itemCount = itemCount;
+		this.finished = new boolean[itemCount];
+		this.heldOutput = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < itemCount; i++) {
+			heldOutput.add(new ArrayList<String>());
+		}
+		this.liveIndex = 0;
+		this.failedIndex = Integer.MAX_VALUE;
+		this.failure = null;
+		this.predictedMemory = new long[itemCount];
+		this.peakMemory = new long[itemCount];
+		this.trackers = new MemoryMonitor.Tracker[itemCount];
+		Arrays.fill(predictedMemory, -1);
+		Arrays.fill(peakMemory, -1);
+		if (!Config.USE_FILE_PIPELINE) {
+			runSequentially();
+		} else {
+			ArrayList<Thread> threads = new ArrayList<Thread>();
+			for (StageRunner stage : stages) {
+				for (int t = 0; t < stage.concurrency; t++) {
+					Thread thread = new Thread(() -> runStage(stage), "Audiscope " + stage.name);
+					thread.setDaemon(true);
+					threads.add(thread);
+					thread.start();
+				}
+			}
+			InterruptedException interrupted = null;
+			for (Thread thread : threads) {
+				while (thread.isAlive()) {
+					try {
+						thread.join();
+					} catch (InterruptedException e) {	// e.g. the task was cancelled (stages stop at their next cancellation check)
+						interrupted = e;
+					}
+				}
+			}
+			if (interrupted != null) throw interrupted;		// Only once no stage is still using files or buffers
+		}
+		if (failure != null) throw failure;
+	}
+
+	// Bytes reserved by an item (or -1 if no memory budget was set, or the item was never started)
+	public synchronized long getPredictedMemory(int index) {
+		return predictedMemory[index];
+	}
+
+	// Peak memory measured while an item held its reservation (or -1 if it hasn't been released yet)
+	public synchronized long getPeakMemory(int index) {
+		return peakMemory[index];
+	}
+
+	// Prints text from a stage thread in file order (returns false if the current thread isn't running a stage)
+	public static boolean printInOrder(String output) {
+		Item item = CURRENT_ITEM.get();
+		if (item == null) return false;
+		item.executor.print(item.index, output);
+		return true;
+	}
+
+	// True unless the current thread is running a stage for a file whose output is being held
+	public static boolean isLive() {
+		Item item = CURRENT_ITEM.get();
+		return (item == null) || item.executor.isLive(item.index);
+	}
+
+	private void runSequentially() {
+		for (int i = 0; i < itemCount; i++) {
+			Object value = i;
+			for (StageRunner stage : stages) {
+				if (value == SKIPPED) break;
+				value = process(stage, new Item(this, i, value));
+			}
+			finish(i);
+			if (failure != null || task.taskCancelled()) return;
+		}
+	}
+
+	private void runStage(StageRunner stage) {
+		while (stage.taken.getAndIncrement() < itemCount) {
+			Item item;
+			try {
+				if (stage.input == null) {
+					int index;
+					synchronized (stage) {		// Indices are claimed in order
+						index = stage.nextIndex++;
+					}
+					item = new Item(this, index, index);
+				} else {
+					item = stage.input.take();
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			Object result = (item.value == SKIPPED) ? SKIPPED : process(stage, item);
+			if (stage.next != null) {
+				forward(stage, new Item(this, item.index, result));
+			} else {
+				finish(item.index);
+			}
+		}
+	}
+
+	// Returns the stage's result (or SKIPPED if the item was stopped, failed or discarded)
+	private Object process(StageRunner stage, Item item) {
+		if (isDiscarded(item.index) || task.taskCancelled()) return discard(item.value);
+		int position = stages.indexOf(stage);
+		Item previous = CURRENT_ITEM.get();		// Restored afterwards (a stage may run on an enclosing item's thread)
+		CURRENT_ITEM.set(item);
+		Object result = SKIPPED;
+		try {
+			if (position == 0 && budget != null && !reserve(item.index)) return discard(item.value);
+			Object value = stage.stage.process(item.index, item.value);
+			if (value != null) result = value;
+			return result;
+		} catch (Exception e) {
+			synchronized (this) {
+				if (item.index < failedIndex) {
+					failedIndex = item.index;
+					failure = e;
+				}
+			}
+			return SKIPPED;		// The input belongs to the stage (which has already released it)
+		} finally {
+			if (position >= reservedStages - 1 || result == SKIPPED) release(item.index);
+			CURRENT_ITEM.set(previous);
+		}
+	}
+
+	// Passes items to the next stage in index order (items may complete out of order if a stage has several threads)
+	private void forward(StageRunner stage, Item item) {
+		synchronized (stage.completed) {
+			stage.completed.put(item.index, item);
+			Item next;
+			while ((next = stage.completed.remove(stage.next.nextIndex)) != null) {
+				stage.next.nextIndex++;
+				try {
+					stage.next.input.put(next);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	// Marks an item as complete, and prints any held output from the items that follow it
+	private synchronized void finish(int index) {
+		release(index);		// In case the item was discarded while holding a reservation
+		finished[index] = true;
+		while (liveIndex < itemCount && finished[liveIndex]) {
+			liveIndex++;
+			if (liveIndex < itemCount) {
+				for (String output : heldOutput.get(liveIndex)) {
+					if (liveIndex <= failedIndex) output(output);
+				}
+				heldOutput.get(liveIndex).clear();
+			}
+		}
+	}
+
+	// Waits until an item's estimated memory fits in the budget (returns false if the task was cancelled while waiting)
+	private boolean reserve(int index) throws InterruptedException {
+		long memory = estimator.estimate(index);
+		if (!budget.acquire(memory, task)) return false;
+		MemoryMonitor.Tracker tracker = budget.getMonitor().startTracking();
+		synchronized (this) {
+			predictedMemory[index] = memory;
+			trackers[index] = tracker;
+		}
+		return true;
+	}
+
+	private void release(int index) {
+		MemoryMonitor.Tracker tracker;
+		synchronized (this) {
+			tracker = trackers[index];
+			trackers[index] = null;
+		}
+		if (tracker == null) return;	// Never reserved, or already released
+		long peak = budget.getMonitor().stopTracking(tracker);
+		budget.release(predictedMemory[index]);
+		synchronized (this) {
+			peakMemory[index] = peak;
+		}
+	}
+
+	private synchronized void print(int index, String output) {
+		if (index > failedIndex) return;	// Never printed (as if the item had never been started)
+		if (index == liveIndex) {
+			output(output);
+		} else {
+			heldOutput.get(index).add(output);
+		}
+	}
+
+	private boolean isLive(int index) {
+		synchronized (this) {
+			if (index != liveIndex) return false;
+		}
+		return (parent == null) || parent.executor.isLive(parent.index);
+	}
+
+	// True if an item (or the enclosing item) failed or follows a failed item, so its results will be thrown away
+	private boolean isDiscarded(int index) {
+		synchronized (this) {
+			if (index > failedIndex) return true;
+		}
+		return (parent != null) && parent.executor.isDiscarded(parent.index);
+	}
+
+	// Prints live output (through the enclosing item if nested)
+	private void output(String output) {
+		if (parent != null) {
+			parent.executor.print(parent.index, output);
+		} else {
+			task.printNow(output);
+		}
+	}
+
+	// Releases anything held by an item that never reached its next stage (e.g. decoded audio)
+	private Object discard(Object value) {
+		if (value instanceof Closeable) {
+			try {
+				((Closeable) value).close();
+			} catch (IOException e) {
+				// Nothing else holds the value, so there is nothing more to release
+			}
+		}
+		return SKIPPED;
+	}
+}
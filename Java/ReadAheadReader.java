@@ -0,0 +1,115 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+// Reads a byte range of a file on a background thread, so that the disk keeps reading while the caller decodes.
+// A fixed set of buffers is passed back and forth between the two threads: the reader thread fills free buffers in
+// file order, and the caller takes each filled buffer, decodes it and then releases it (so nothing is allocated per block).
+// The buffers are borrowed from the shared BufferPool, so they are also reused by the next file.
+public class ReadAheadReader implements Closeable {
+	public static class Block {
+		public byte[] data;
+		public int length;		// Bytes read into 'data'
+	}
+
+	private static final Block END = new Block();		// Marks the end of the range (or an error)
+
+	private FileChannel channel;
+	private long position;
+	private long end;
+	private int blockSize;		// Borrowed arrays may be larger than this
+	private BlockingQueue<Block> freeBlocks;
+	private BlockingQueue<Block> filledBlocks;
+	private Block[] blocks;
+	private Thread thread;
+	private volatile boolean closed;
+	private volatile IOException error;
+	private boolean finished;
+
+	// Reads bytes 'start' to 'end' - 1 of 'channel' in blocks of 'blockSize' bytes, keeping up to 'blockCount' blocks ahead
+	public ReadAheadReader(FileChannel channel, long start, long end, int blockSize, int blockCount) {
+		this.channel = channel;
+		this.position = start;
+		this.end = end;
+		this.freeBlocks = new ArrayBlockingQueue<Block>(blockCount);
+		this.filledBlocks = new ArrayBlockingQueue<Block>(blockCount + 1);
+		this.blocks = new Block[blockCount];
+		for (int b = 0; b < blockCount; b++) {
+			blocks[b] = new Block();
+			blocks[b].data = BufferPool.SHARED.borrow(blockSize);
+			freeBlocks.add(blocks[b]);
+		}
+		this.blockSize = blockSize;
+		this.thread = new Thread(this::readBlocks, "Audiscope read-ahead");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	// Returns the next block in file order (or null once the whole range has been returned).
+	// Every block must be released after it has been decoded.
+	public Block take() throws IOException {
+		if (finished) return null;
+		try {
+			Block block = filledBlocks.take();
+			if (block == END) {
+				finished = true;
+				if (error != null) throw error;
+				return null;
+			}
+			return block;
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Read-ahead was interrupted");
+		}
+	}
+
+	public void release(Block block) {
+		freeBlocks.offer(block);
+	}
+
+	// Stops the reader thread (the channel itself isn't closed). Closing more than once has no effect.
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) return;		// The blocks have already been returned to the pool
+		closed = true;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;		// The reader thread may still be using the blocks
+		}
+		for (Block block : blocks) {
+			BufferPool.SHARED.release(block.data);
+		}
+	}
+
+	private void readBlocks() {
+		try {
+			while (position < end && !closed) {
+				Block block = freeBlocks.take();
+				ByteBuffer buffer = ByteBuffer.wrap(block.data, 0, (int) Math.min(blockSize, end - position));
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, position + buffer.position()) < 0) {
+						throw new EOFException("Unexpected end of audio data");
+					}
+				}
+				block.length = buffer.position();
+				position += block.length;
+				filledBlocks.put(block);
+			}
+		} catch (InterruptedException | ClosedByInterruptException e) {
+			return;		// Closed
+		} catch (IOException e) {
+			error = e;
+		}
+		filledBlocks.offer(END);
+	}
+}
@@ -0,0 +1,198 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.atomic.*;
+
+// Long-indexed storage for a decoded audio stream.
+// Samples are held in fixed-size segments (allocated as they are filled), so recordings aren't limited to 2^31 frames,
+// and no single allocation has to hold the whole recording.
+// Segments are stored off the Java heap (so the heap size doesn't depend on the length of the recording): they are
+// direct buffers, unless the stores in memory would exceed SAMPLE_SPILL_THRESHOLD between them, in which case they are
+// mapped from a temporary file (so the operating system can page them out, rather than the whole store having to fit
+// in RAM). Segments are freed as soon as the store is closed, rather than when they are garbage collected.
+public class SampleStore implements Closeable {
+	private static final AtomicLong DIRECT_BYTES = new AtomicLong();	// Reserved by the stores in memory (see reserveDirect)
+	private static final Object UNSAFE;				// sun.misc.Unsafe (null if the jdk.unsupported module is missing)
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			unsafe = null;		// Segments are left to the garbage collector
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private ByteBuffer[] buffers;	// The direct or mapped buffer behind each segment (see free)
+	private IntBuffer[] segments;
+	private int segmentShift;
+	private int segmentMask;
+	private long capacity;
+	private long length;
+	private int[] block;			// Decoding buffer (see append)
+	private File spillFile;			// Null unless the store is file-backed
+	private FileChannel spillChannel;
+	private long directBytes;		// Reserved for a store in memory
+
+	// Empty store that can hold up to 'capacity' samples
+	public SampleStore(long capacity) throws IOException {
+		this.segmentShift = Config.SAMPLE_SEGMENT_SHIFT;
+		this.segmentMask = (1 << segmentShift) - 1;
+		this.capacity = capacity;
+		this.segments = new IntBuffer[(int) ((capacity + segmentMask) >>> segmentShift)];
+		this.buffers = new ByteBuffer[segments.length];
+		if (reserveDirect(capacity * 4)) {
+			directBytes = capacity * 4;
+		} else {
+			spillFile = File.createTempFile("Audiscope", ".samples");
+			spillFile.deleteOnExit();
+			spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+	}
+
+	public long length() {
+		return length;
+	}
+
+	public boolean isFileBacked() {
+		return spillChannel != null;
+	}
+
+	public int get(long index) {
+		return segments[(int) (index >>> segmentShift)].get((int) index & segmentMask);
+	}
+
+	// Copies samples[position] to samples[position + count - 1] into 'destination'
+	public void read(long position, int[] destination, int offset, int count) {
+		while (count > 0) {
+			IntBuffer segment = segments[(int) (position >>> segmentShift)];
+			int index = (int) position & segmentMask;
+			int copied = Math.min(count, segment.capacity() - index);
+			segment.get(index, destination, offset, copied);
+			position += copied;
+			offset += copied;
+			count -= copied;
+		}
+	}
+
+	// Copies 'count' samples into 'destination', starting at samples[position] and taking every 'stride'th sample
+	public void read(long position, int stride, int[] destination, int offset, int count) {
+		if (stride == 1) {
+			read(position, destination, offset, count);
+			return;
+		}
+		while (count > 0) {
+			IntBuffer segment = segments[(int) (position >>> segmentShift)];
+			int index = (int) position & segmentMask;
+			int copied = (int) Math.min(count, ((long) segment.capacity() - index + stride - 1) / stride);
+			for (int i = 0; i < copied; i++, index += stride) {
+				destination[offset + i] = segment.get(index);
+			}
+			position += (long) copied * stride;
+			offset += copied;
+			count -= copied;
+		}
+	}
+
+	// Decodes up to 'maxFrames' frames onto the end of the store.
+	// Returns the number of frames added (or -1 if the reader has no more audio, or the store is full).
+	public int append(AudioFileReader reader, int maxFrames) throws IOException {
+		if (length >= capacity) return -1;
+		int s = (int) (length >>> segmentShift);
+		if (segments[s] == null) {
+			segments[s] = allocateSegment(s);
+		}
+		int index = (int) length & segmentMask;
+		int frames = Math.min(maxFrames, segments[s].capacity() - index);
+		if (block == null || block.length < frames) {
+			block = new int[frames];
+		}
+		int framesRead = reader.read(block, 0, frames);
+		if (framesRead > 0) {
+			segments[s].put(index, block, 0, framesRead);
+			length += framesRead;
+		}
+		return framesRead;
+	}
+
+	// Copies samples[offset] to samples[offset + count - 1] onto the end of the store
+	public void append(int[] samples, int offset, int count) throws IOException {
+		if (length + count > capacity) throw new IOException("Error: Sample store is full");
+		while (count > 0) {
+			int s = (int) (length >>> segmentShift);
+			if (segments[s] == null) {
+				segments[s] = allocateSegment(s);
+			}
+			int index = (int) length & segmentMask;
+			int copied = Math.min(count, segments[s].capacity() - index);
+			segments[s].put(index, samples, offset, copied);
+			length += copied;
+			offset += copied;
+			count -= copied;
+		}
+	}
+
+	// Frees the segments straight away (and deletes a file-backed store's file), so the store must no longer be read
+	@Override
+	public synchronized void close() throws IOException {
+		ByteBuffer[] freed = buffers;
+		segments = new IntBuffer[0];
+		buffers = new ByteBuffer[0];
+		block = null;
+		for (ByteBuffer buffer : freed) {
+			if (buffer != null) free(buffer);
+		}
+		DIRECT_BYTES.addAndGet(-directBytes);
+		directBytes = 0;
+		if (spillChannel != null) {
+			spillChannel.close();
+			spillChannel = null;
+			if (!spillFile.delete()) spillFile.deleteOnExit();	// Mapped files can't be deleted on Windows unless they were freed
+		}
+	}
+
+	private IntBuffer allocateSegment(int s) throws IOException {
+		long start = (long) s << segmentShift;
+		int size = (int) Math.min(segmentMask + 1L, capacity - start);
+		ByteBuffer buffer = (spillChannel != null) ?
+							spillChannel.map(FileChannel.MapMode.READ_WRITE, start * 4, size * 4L) :
+							ByteBuffer.allocateDirect(size * 4);
+		buffers[s] = buffer;
+		return buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	// Reserves memory for a store that is held in direct buffers (returns false if the store should use a file instead)
+	private static boolean reserveDirect(long bytes) {
+		for (long reserved = DIRECT_BYTES.get(); reserved + bytes <= Config.SAMPLE_SPILL_THRESHOLD; reserved = DIRECT_BYTES.get()) {
+			if (DIRECT_BYTES.compareAndSet(reserved, reserved + bytes)) return true;
+		}
+		return false;
+	}
+
+	// Unmaps or deallocates a direct buffer now, rather than when it is garbage collected
+	private static void free(ByteBuffer buffer) {
+		if (UNSAFE == null) return;
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// The buffer is left to the garbage collector
+		}
+	}
+}
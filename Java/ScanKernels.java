@@ -0,0 +1,89 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+// Inner loops shared by the scanners.
+// Each kernel has a scalar reference implementation, and a SIMD implementation (see VectorKernels) that is used when
+// the jdk.incubator.vector module is available at runtime. Both implementations give identical results, except for
+// the RMS sum in getWaveformSums (which is accumulated in a different order, so may differ in the last few bits).
+public class ScanKernels {
+	public static final boolean VECTOR_ENABLED = Config.USE_VECTOR_KERNELS && isVectorModuleAvailable();
+	public static final int TERM_BLOCK_SIZE = 4096;		// Minimum length of the 'terms' scratch array (see getLoopVarianceSum)
+	private static final double VECTOR_SAFE_RANGE = 16777216.0;	// 24-bit samples can't overflow int lanes
+
+	// Returns the largest absolute difference between consecutive samples in samples[from - 1] to samples[to - 1]
+	public static long getMaxGradient(int[] samples, int from, int to, double maxValue) {
+		if (VECTOR_ENABLED && maxValue <= VECTOR_SAFE_RANGE) {
+			return VectorKernels.getMaxGradient(samples, from, to);
+		}
+		long maxGradient = 0;
+		for (int i = from; i < to; i++) {
+			maxGradient = Math.max(maxGradient, Math.abs((long) samples[i] - (long) samples[i - 1]));
+		}
+		return maxGradient;
+	}
+
+	// Returns the largest absolute sample that is immediately followed by a zero sample (in samples[from] to samples[to - 1])
+	public static long getMaxCutout(int[] samples, int from, int to, double maxValue) {
+		if (VECTOR_ENABLED && maxValue <= VECTOR_SAFE_RANGE) {
+			return VectorKernels.getMaxCutout(samples, from, to);
+		}
+		long maxCutout = 0;
+		for (int i = from; i < to; i++) {
+			if (samples[i] == 0) {
+				maxCutout = Math.max(maxCutout, Math.abs((long) samples[i - 1]));
+			}
+		}
+		return maxCutout;
+	}
+
+	// Sum of the relative differences between the window starting at 'frame' and the audio one loop length earlier.
+	// 'terms' is scratch space; the sum is always accumulated sequentially, so the result doesn't depend on the kernel.
+	public static double getLoopVarianceSum(int[] audioData, int frame, int windowSize, int loopLength, double[] terms) {
+		if (VECTOR_ENABLED) {
+			return VectorKernels.getLoopVarianceSum(audioData, frame, windowSize, loopLength, terms);
+		}
+		double varianceSum = 0.0;
+		for (int i = frame; i < frame + windowSize; i++) {
+			int prevValue = audioData[i];
+			int currValue = audioData[i - loopLength];
+			if (prevValue == 0) {	// Safeguard against zero-division below
+				prevValue += 1;
+				currValue += 1;
+			}
+			varianceSum += Math.abs((double) (currValue - prevValue) / prevValue);
+		}
+		return varianceSum;
+	}
+
+	// Returns {peak, sum of squares} of the normalised samples (positive and negative samples have different limits)
+	public static double[] getWaveformSums(int[] audioData, int from, int to, int bitDepth) {
+		if (VECTOR_ENABLED) {
+			return VectorKernels.getWaveformSums(audioData, from, to, bitDepth);
+		}
+		double positiveLimit = Math.pow(2, bitDepth - 1) - 1;
+		double negativeLimit = Math.pow(2, bitDepth - 1) * -1;
+		double peak = 0.0;
+		double sumOfSquares = 0.0;
+		for (int i = from; i < to; i++) {
+			int value = audioData[i];
+			double limit = value >= 0 ? positiveLimit : negativeLimit;
+			peak = Math.max(peak, Math.abs(value / limit));
+			sumOfSquares += Math.pow(value / limit, 2);
+		}
+		return new double[] {peak, sumOfSquares};
+	}
+
+	// The module must be added at startup (--add-modules jdk.incubator.vector), and the run scripts only add it if the
+	// bundled JRE includes it, so it may be missing
+	private static boolean isVectorModuleAvailable() {
+		try {
+			return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && VectorKernels.isSupported();
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+// Calculates trailing moving averages with a running sum (i.e. O(n) for any window size).
+// Each point is the average of itself and up to (windowSize - 1) points before it, so the first points of the series
+// are averaged over a partial window.
+public class SmoothingEngine {
+	private static final double MAX_CANCELLATION = 0x1p20;	// Window is summed directly once its largest value exceeds the running sum by this factor
+	
+	public static double[][] getMovingAverages(double[] data, int[] windowSizes) {
+		double[][] averages = new double[windowSizes.length][];
+		for (int w = 0; w < windowSizes.length; w++) {
+			averages[w] = getMovingAverage(data, windowSizes[w]);
+		}
+		return averages;
+	}
+
+	public static double[] getMovingAverage(double[] data, int windowSize) {
+		double[] average = new double[data.length];
+		double sum = 0.0;
+		double compensation = 0.0;	// Low-order bits lost by the running sum (Kahan summation prevents drift)
+		double peak = 0.0;			// Largest magnitude added since the window was last summed directly
+		for (int v = 0; v < data.length; v++) {
+			double y = data[v] - compensation;
+			if (v >= windowSize) y -= data[v - windowSize];	// Point leaving the window
+			double t = sum + y;
+			compensation = (t - sum) - y;
+			sum = t;
+			peak = Math.max(peak, Math.abs(data[v]));
+			if (!Double.isFinite(sum) || !Double.isFinite(compensation) || peak > Math.abs(sum) * MAX_CANCELLATION) {
+				// Overflow (e.g. clamped exponential values) or large values leaving the window would corrupt the
+				// running sum, so the window is summed directly (as for a single point) until it recovers
+				int start = Math.max(v - windowSize + 1, 0);
+				sum = 0.0;
+				peak = 0.0;
+				for (int w = start; w <= v; w++) {
+					sum += data[w];
+					peak = Math.max(peak, Math.abs(data[w]));
+				}
+				compensation = 0.0;
+			}
+			average[v] = sum / Math.min(v + 1, windowSize);
+		}
+		return average;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+* Audiscope
+* 
+* Author: Alexander Khouri
+* Date: September 2024
+*/
+
+import jdk.incubator.vector.*;
+
+// SIMD implementations of ScanKernels (only loaded if the jdk.incubator.vector module is available).
+// The preferred species adapts to the hardware (e.g. AVX2 = 8 int lanes, AVX-512 = 16 int lanes, NEON = 4 int lanes).
+public class VectorKernels {
+	private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Double> DOUBLE_SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> HALF_INT_SPECIES =	// Same lane count as DOUBLE_SPECIES
+		VectorSpecies.of(int.class, VectorShape.forBitSize(Math.max(64, DOUBLE_SPECIES.vectorBitSize() / 2)));
+
+	public static boolean isSupported() {
+		return INT_SPECIES.length() >= 4 && DOUBLE_SPECIES.length() >= 2 &&
+			   HALF_INT_SPECIES.length() == DOUBLE_SPECIES.length();
+	}
+
+	public static long getMaxGradient(int[] samples, int from, int to) {
+		IntVector maxGradient = IntVector.zero(INT_SPECIES);
+		int i = from;
+		for (int bound = from + INT_SPECIES.loopBound(to - from); i < bound; i += INT_SPECIES.length()) {
+			IntVector curr = IntVector.fromArray(INT_SPECIES, samples, i);
+			IntVector prev = IntVector.fromArray(INT_SPECIES, samples, i - 1);
+			maxGradient = maxGradient.max(curr.sub(prev).abs());
+		}
+		long result = maxGradient.reduceLanes(VectorOperators.MAX);
+		for (; i < to; i++) {
+			result = Math.max(result, Math.abs((long) samples[i] - (long) samples[i - 1]));
+		}
+		return result;
+	}
+
+	public static long getMaxCutout(int[] samples, int from, int to) {
+		IntVector maxCutout = IntVector.zero(INT_SPECIES);
+		int i = from;
+		for (int bound = from + INT_SPECIES.loopBound(to - from); i < bound; i += INT_SPECIES.length()) {
+			VectorMask<Integer> cutout = IntVector.fromArray(INT_SPECIES, samples, i).eq(0);
+			IntVector prev = IntVector.fromArray(INT_SPECIES, samples, i - 1);
+			maxCutout = maxCutout.lanewise(VectorOperators.MAX, prev.abs(), cutout);
+		}
+		long result = maxCutout.reduceLanes(VectorOperators.MAX);
+		for (; i < to; i++) {
+			if (samples[i] == 0) {
+				result = Math.max(result, Math.abs((long) samples[i - 1]));
+			}
+		}
+		return result;
+	}
+
+	// Terms are calculated in parallel lanes, but summed in order (so the result matches the scalar kernel exactly)
+	public static double getLoopVarianceSum(int[] audioData, int frame, int windowSize, int loopLength, double[] terms) {
+		double varianceSum = 0.0;
+		int lanes = DOUBLE_SPECIES.length();
+		for (int block = frame; block < frame + windowSize; block += ScanKernels.TERM_BLOCK_SIZE) {
+			int blockSize = Math.min(ScanKernels.TERM_BLOCK_SIZE, frame + windowSize - block);
+			int j = 0;
+			for (int bound = DOUBLE_SPECIES.loopBound(blockSize); j < bound; j += lanes) {
+				IntVector prev = IntVector.fromArray(HALF_INT_SPECIES, audioData, block + j);
+				IntVector curr = IntVector.fromArray(HALF_INT_SPECIES, audioData, block + j - loopLength);
+				VectorMask<Integer> zero = prev.eq(0);		// Safeguard against zero-division below
+				prev = prev.lanewise(VectorOperators.ADD, 1, zero);
+				curr = curr.lanewise(VectorOperators.ADD, 1, zero);
+				DoubleVector difference = (DoubleVector) curr.sub(prev).convertShape(VectorOperators.I2D, DOUBLE_SPECIES, 0);
+				DoubleVector divisor = (DoubleVector) prev.convertShape(VectorOperators.I2D, DOUBLE_SPECIES, 0);
+				difference.div(divisor).abs().intoArray(terms, j);
+			}
+			for (; j < blockSize; j++) {
+				int prevValue = audioData[block + j];
+				int currValue = audioData[block + j - loopLength];
+				if (prevValue == 0) {
+					prevValue += 1;
+					currValue += 1;
+				}
+				terms[j] = Math.abs((double) (currValue - prevValue) / prevValue);
+			}
+			for (j = 0; j < blockSize; j++) {
+				varianceSum += terms[j];
+			}
+		}
+		return varianceSum;
+	}
+
+	public static double[] getWaveformSums(int[] audioData, int from, int to, int bitDepth) {
+		double positiveLimit = Math.pow(2, bitDepth - 1) - 1;
+		double negativeLimit = Math.pow(2, bitDepth - 1) * -1;
+		int lanes = DOUBLE_SPECIES.length();
+		IntVector maxValues = IntVector.broadcast(HALF_INT_SPECIES, 0);
+		IntVector minValues = IntVector.broadcast(HALF_INT_SPECIES, 0);
+		DoubleVector sumOfSquares = DoubleVector.zero(DOUBLE_SPECIES);
+		int i = from;
+		for (int bound = from + DOUBLE_SPECIES.loopBound(to - from); i < bound; i += lanes) {
+			IntVector values = IntVector.fromArray(HALF_INT_SPECIES, audioData, i);
+			maxValues = maxValues.max(values);
+			minValues = minValues.min(values);
+			DoubleVector normalised = (DoubleVector) values.convertShape(VectorOperators.I2D, DOUBLE_SPECIES, 0);
+			VectorMask<Double> negative = normalised.lt(0.0);
+			DoubleVector limits = DoubleVector.broadcast(DOUBLE_SPECIES, positiveLimit).blend(negativeLimit, negative);
+			normalised = normalised.div(limits);
+			sumOfSquares = normalised.fma(normalised, sumOfSquares);
+		}
+		double sum = sumOfSquares.reduceLanes(VectorOperators.ADD);
+		long maxValue = maxValues.reduceLanes(VectorOperators.MAX);
+		long minValue = minValues.reduceLanes(VectorOperators.MIN);
+		for (; i < to; i++) {
+			int value = audioData[i];
+			maxValue = Math.max(maxValue, value);
+			minValue = Math.min(minValue, value);
+			double limit = value >= 0 ? positiveLimit : negativeLimit;
+			sum += Math.pow(value / limit, 2);
+		}
+		// Division is monotonic, so the largest value of each sign gives the same peak as dividing every sample
+		double peak = Math.max(Math.abs(maxValue / positiveLimit), Math.abs(minValue / negativeLimit));
+		return new double[] {peak, sum};
+	}
+}
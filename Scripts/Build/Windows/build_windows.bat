@@ -1,6 +1,6 @@
 rmdir /s /q "Classes"
 mkdir "Classes"
-javac -classpath "./JAR/*" -d "Classes/" "Java/AppGUI.java" "Java/AudioData.java" "Java/ExecutionBatch.java" "Java/FileProcessingTask.java" "Java/Config.java"
+javac --add-modules jdk.incubator.vector -classpath "./JAR/*" -d "Classes/" "Java/AppGUI.java" "Java/AudioData.java" "Java/ExecutionBatch.java" "Java/FileProcessingTask.java" "Java/Config.java" "Java/MemoryMonitor.java" "Java/MemoryEstimator.java" "Java/MemoryBudget.java" "Java/PipelineExecutor.java" "Java/BufferPool.java" "Java/ReadAheadReader.java" "Java/SampleStore.java" "Java/FileSplitEngine.java" "Java/GainAnalysisEngine.java" "Java/DecimationEngine.java" "Java/SmoothingEngine.java" "Java/VectorKernels.java" "Java/ScanKernels.java" "Java/LoopVarianceEngine.java" "Java/LoopLengthEngine.java" "Java/LinearScanEngine.java" "Java/AudioFileReader.java" "Java/PCMDecoder.java"
 
 cd Classes
 del /F "../JAR/Audiscope.jar"
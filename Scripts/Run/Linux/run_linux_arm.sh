@@ -1,2 +1,4 @@
 DIR="$( cd "$( dirname "$0" )" && pwd )"
-"$DIR/JRE/Linux-ARM/bin/java" -classpath "$DIR/JAR/*" -Xmx16g AppGUI "$DIR" &
\ No newline at end of file
+MODULES=""
+if grep -q "jdk.incubator.vector" "$DIR/JRE/Linux-ARM/release" 2>/dev/null; then MODULES="--add-modules jdk.incubator.vector"; fi
+"$DIR/JRE/Linux-ARM/bin/java" $MODULES -classpath "$DIR/JAR/*" -Xmx16g -XX:MaxDirectMemorySize=9g AppGUI "$DIR" &
\ No newline at end of file
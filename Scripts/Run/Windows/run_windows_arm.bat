@@ -1,2 +1,4 @@
 cd %~dp0
-"./JRE/Windows-ARM/bin/javaw" -classpath "./JAR/*" -Xmx16g AppGUI "%~dp0
\ No newline at end of file
+set MODULES=
+findstr /c:"jdk.incubator.vector" "JRE\Windows-ARM\release" >nul 2>&1 && set MODULES=--add-modules jdk.incubator.vector
+"./JRE/Windows-ARM/bin/javaw" %MODULES% -classpath "./JAR/*" -Xmx16g -XX:MaxDirectMemorySize=9g AppGUI "%~dp0
\ No newline at end of file
@@ -1,2 +1,4 @@
 cd %~dp0
-"./JRE/Windows-x86/bin/javaw" -classpath "./JAR/*" -Xmx16g AppGUI "%~dp0
\ No newline at end of file
+set MODULES=
+findstr /c:"jdk.incubator.vector" "JRE\Windows-x86\release" >nul 2>&1 && set MODULES=--add-modules jdk.incubator.vector
+"./JRE/Windows-x86/bin/javaw" %MODULES% -classpath "./JAR/*" -Xmx16g -XX:MaxDirectMemorySize=9g AppGUI "%~dp0
\ No newline at end of file